@@ -0,0 +1,118 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation test of {@link AsyncRssItemRepository}
+ */
+@RunWith(AndroidJUnit4.class)
+public class AsyncRssItemRepositoryTest {
+
+    private Context mContext;
+    private String mDbName;
+    private AsyncRssItemRepository mRepository;
+
+    //the callbacks, which the test runs as if it was the main thread
+    private final BlockingQueue<Runnable> mCallbacks = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        //a brand new database for every run, the helpers live as long as the process
+        mDbName = "ASYNC_DB_" + System.currentTimeMillis();
+        RssItemRepository repository = new RssItemRepository(mContext, new ImagePathResolver() {
+            @Override
+            public String resolve(String imageUrl) {
+                return "cache/" + imageUrl.hashCode();
+            }
+        }, mDbName);
+        mRepository = new AsyncRssItemRepository(repository, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mCallbacks.add(runnable);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(mDbName);
+    }
+
+    @Test
+    public void deliversTheResultsThroughTheCallbackExecutor() throws Exception {
+        RecordingCallback<List<RssItem>> inserted = new RecordingCallback<>();
+        mRepository.insertItems(Collections.singletonList(item("First")), inserted);
+        runNextCallback();
+        assertEquals(1, inserted.mResult.size());
+
+        RecordingCallback<RssItem> read = new RecordingCallback<>();
+        mRepository.getItemById(inserted.mResult.get(0).getId(), read);
+        runNextCallback();
+        assertEquals("First", read.mResult.getTitle());
+        assertEquals("Description", read.mResult.getDescription());
+    }
+
+    @Test
+    public void cancelledTaskNeverCallsBack() throws Exception {
+        RecordingCallback<List<RssItem>> inserted = new RecordingCallback<>();
+        AsyncRssItemRepository.Task task = mRepository.insertItems(
+                Collections.singletonList(item("Second")), inserted);
+        task.cancel();
+
+        //the write may have run already, but its outcome is dropped
+        Runnable callback = mCallbacks.poll(1, TimeUnit.SECONDS);
+        if (callback != null) {
+            callback.run();
+        }
+        assertFalse(inserted.mCalled);
+    }
+
+    private void runNextCallback() throws InterruptedException {
+        Runnable callback = mCallbacks.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No callback delivered", callback);
+        callback.run();
+    }
+
+    private static RssItem item(String title) {
+        return new RssItem(title, "http://example.com/" + title, "Author", "Description",
+                "Mon, 16 Oct 2017 10:00:00 GMT", "news", null, null);
+    }
+
+    private static class RecordingCallback<T> implements AsyncRssItemRepository.Callback<T> {
+
+        private boolean mCalled;
+        private T mResult;
+
+        @Override
+        public void onResult(T result) {
+            mCalled = true;
+            mResult = result;
+        }
+
+        @Override
+        public void onError(RuntimeException error) {
+            mCalled = true;
+            throw error;
+        }
+    }
+}
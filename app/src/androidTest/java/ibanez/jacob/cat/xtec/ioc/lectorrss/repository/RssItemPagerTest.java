@@ -0,0 +1,92 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation test of the paging of the items of {@link RssItemRepository}
+ */
+@RunWith(AndroidJUnit4.class)
+public class RssItemPagerTest {
+
+    private Context mContext;
+    private String mDbName;
+    private RssItemRepository mRepository;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        //a brand new database for every run, the helpers live as long as the process
+        mDbName = "PAGER_DB_" + System.currentTimeMillis();
+        mRepository = new RssItemRepository(mContext, new ImagePathResolver() {
+            @Override
+            public String resolve(String imageUrl) {
+                return "cache/" + imageUrl.hashCode();
+            }
+        }, mDbName);
+
+        List<RssItem> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            items.add(new RssItem(i == 3 ? "Sports" : "Title " + i, "http://example.com/" + i, "Author",
+                    "Description of sports", "Mon, 16 Oct 2017 10:00:00 GMT", "news", null, null));
+        }
+        mRepository.insertItems(items);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(mDbName);
+    }
+
+    @Test
+    public void pagesEveryItemOnceInOrder() {
+        RssItemPager pager = mRepository.getItems(null, 2);
+
+        assertEquals(titles("Title 0", "Title 1"), titlesOf(pager.nextPage()));
+        assertEquals(titles("Title 2", "Sports"), titlesOf(pager.nextPage()));
+        assertTrue(pager.hasMore());
+        assertEquals(titles("Title 4"), titlesOf(pager.nextPage()));
+        assertFalse(pager.hasMore());
+        assertTrue(pager.nextPage().isEmpty());
+    }
+
+    @Test
+    public void pagesSearchByRelevance() {
+        //every item is about sports, but only one has it in the title, which counts the most
+        RssItemPager pager = mRepository.getItems("spor", 3);
+
+        assertEquals(titles("Sports", "Title 0", "Title 1"), titlesOf(pager.nextPage()));
+        assertEquals(titles("Title 2", "Title 4"), titlesOf(pager.nextPage()));
+        assertFalse(pager.hasMore());
+    }
+
+    private static List<String> titles(String... titles) {
+        List<String> list = new ArrayList<>();
+        for (String title : titles) {
+            list.add(title);
+        }
+        return list;
+    }
+
+    private static List<String> titlesOf(List<RssItem> items) {
+        List<String> titles = new ArrayList<>();
+        for (RssItem item : items) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,118 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of the latency of every operation of {@link RssItemRepository}, on a device.
+ * <p>
+ * It compares reopening the database around every operation, with a rollback journal, as the
+ * repository used to do, with the shared connection in write-ahead logging mode. Both sides run the
+ * same code of the repository, on the same schema, starting from empty databases, so the connection
+ * is the only difference. The median latency of every operation is logged with the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RssItemRepositoryBenchmark {
+
+    private static final String TAG = "RepositoryBenchmark";
+    private static final String SHARED_DB = "BENCHMARK_SHARED_DB";
+    private static final String REOPENED_DB = "BENCHMARK_REOPENED_DB";
+    private static final int OPERATIONS = 200;
+
+    private static final ImagePathResolver IMAGE_PATHS = new ImagePathResolver() {
+        @Override
+        public String resolve(String imageUrl) {
+            return imageUrl;
+        }
+    };
+
+    private Context mContext;
+    private String mSharedDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(REOPENED_DB);
+
+        //the shared connection stays open as long as the process, so every run gets a brand new database
+        mSharedDb = SHARED_DB + "_" + System.currentTimeMillis();
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(mSharedDb);
+        mContext.deleteDatabase(REOPENED_DB);
+    }
+
+    @Test
+    public void sharedConnectionVersusReopening() {
+        long[] reopenedInserts = new long[OPERATIONS];
+        long[] reopenedSearches = new long[OPERATIONS];
+        File reopenedFile = mContext.getDatabasePath(REOPENED_DB);
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(reopenedFile, null);
+        RssItemRepository.createSchema(db);
+        db.close();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long start = System.nanoTime();
+            db = SQLiteDatabase.openDatabase(reopenedFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            assertEquals(1, new RssItemRepository(db, IMAGE_PATHS).insertItem(newItem(i)));
+            db.close();
+            reopenedInserts[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            db = SQLiteDatabase.openDatabase(reopenedFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            new RssItemRepository(db, IMAGE_PATHS).getAllItems("Title " + i);
+            db.close();
+            reopenedSearches[i] = System.nanoTime() - start;
+        }
+
+        long[] sharedInserts = new long[OPERATIONS];
+        long[] sharedSearches = new long[OPERATIONS];
+        RssItemRepository repository = new RssItemRepository(mContext, IMAGE_PATHS, mSharedDb);
+        for (int i = 0; i < OPERATIONS; i++) {
+            long start = System.nanoTime();
+            assertEquals(1, repository.insertItem(newItem(i)));
+            sharedInserts[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            repository.getAllItems("Title " + i);
+            sharedSearches[i] = System.nanoTime() - start;
+        }
+
+        Log.i(TAG, "insert: reopening " + median(reopenedInserts) + " us, shared " +
+                median(sharedInserts) + " us");
+        Log.i(TAG, "search: reopening " + median(reopenedSearches) + " us, shared " +
+                median(sharedSearches) + " us");
+    }
+
+    private static RssItem newItem(int i) {
+        String link = "http://example.com/" + i;
+        return new RssItem("Title " + i, link, "Author " + i, "Description " + link,
+                "Mon, 16 Oct 2017 10:00:" + i, "Category " + link, link + ".jpg", link + ".jpg");
+    }
+
+    /**
+     * @return The median of the given latencies, in microseconds
+     */
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1000;
+    }
+}
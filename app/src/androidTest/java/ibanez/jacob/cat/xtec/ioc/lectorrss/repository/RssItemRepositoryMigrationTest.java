@@ -0,0 +1,90 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation test of the migration of the database of {@link RssItemRepository} from the
+ * version 1 of the schema
+ */
+@RunWith(AndroidJUnit4.class)
+public class RssItemRepositoryMigrationTest {
+
+    @Test
+    public void upgradeFromVersion1KeepsTheItems() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        //a brand new database for every run, the helpers live as long as the process
+        String dbName = "MIGRATION_DB_" + System.currentTimeMillis();
+
+        SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(dbName), null);
+        v1.execSQL("CREATE TABLE ITEMS (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "TITLE TEXT NOT NULL UNIQUE, LINK TEXT NOT NULL UNIQUE, AUTHOR TEXT NOT NULL UNIQUE, " +
+                "DESCRIPTION TEXT NOT NULL UNIQUE, PUB_DATE TEXT NOT NULL UNIQUE, " +
+                "CATEGORIES TEXT NOT NULL UNIQUE, THUMBNAIL TEXT NOT NULL UNIQUE, " +
+                "IMAGE_CACHE_PATH TEXT NOT NULL UNIQUE);");
+        v1.insert("ITEMS", null, values("First", "http://example.com/1", "Jacob"));
+        v1.insert("ITEMS", null, values("Second", "http://example.com/2", "Anna"));
+        v1.setVersion(1);
+        v1.close();
+
+        RssItemRepository repository = new RssItemRepository(context, new ImagePathResolver() {
+            @Override
+            public String resolve(String imageUrl) {
+                return "cache/" + imageUrl.hashCode();
+            }
+        }, dbName);
+
+        try {
+            List<RssItem> items = repository.getAllItems(null);
+            assertEquals(2, items.size());
+            assertEquals(Arrays.asList("http://example.com/2", "http://example.com/1"),
+                    repository.getRecentLinks(10));
+            assertEquals("cache/" + "http://example.com/1.jpg".hashCode(), items.get(0).getImagePathInCache());
+            //the list has the title only, the rest of the item is read when it's opened
+            assertNull(items.get(0).getAuthor());
+            assertEquals("Jacob", repository.getItemById(items.get(0).getId()).getAuthor());
+            //the existing items are in the full-text index
+            List<RssItem> found = repository.getAllItems("seco");
+            assertEquals(1, found.size());
+            assertEquals("Second", found.get(0).getTitle());
+
+            //the same author and no thumbnail don't prevent an item from being stored anymore
+            RssItem third = new RssItem("Third", "http://example.com/3", "Jacob", "Description",
+                    "Mon, 16 Oct 2017 10:00:00 GMT", "news", null, null);
+            assertEquals(1, repository.insertItem(third));
+            //but the same link does
+            assertEquals(0, repository.insertItem(third));
+            //and new items are indexed as well
+            assertEquals(1, repository.getAllItems("third news").size());
+        } finally {
+            context.deleteDatabase(dbName);
+        }
+    }
+
+    private static ContentValues values(String title, String link, String author) {
+        ContentValues values = new ContentValues();
+        values.put("TITLE", title);
+        values.put("LINK", link);
+        values.put("AUTHOR", author);
+        values.put("DESCRIPTION", "Description of " + title);
+        values.put("PUB_DATE", "Date of " + title);
+        values.put("CATEGORIES", "Categories of " + title);
+        values.put("THUMBNAIL", link + ".jpg");
+        values.put("IMAGE_CACHE_PATH", "/cache/" + title + ".jpg");
+        return values;
+    }
+}
@@ -0,0 +1,50 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Memory cache of the decoded thumbnails, in front of the {@link DiskLruCache}.
+ * <p>
+ * It's bounded by the memory of the bitmaps, as a fraction of the maximum heap of the app, and the
+ * least recently used bitmaps are evicted first. A thumbnail found here costs neither disk access nor
+ * decoding at all. It's shared by the whole app, so it survives the recreation of the activities.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class BitmapMemoryCache extends LruCache<String, Bitmap> {
+
+    //Fraction of the maximum heap used by the cache
+    private static final int HEAP_FRACTION = 8;
+
+    //the single instance
+    private static BitmapMemoryCache sInstance;
+
+    /**
+     * @return The memory cache shared by the whole app
+     */
+    public static synchronized BitmapMemoryCache getInstance() {
+        if (sInstance == null) {
+            //sizes are measured in kilobytes, so big heaps never overflow an int
+            int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / HEAP_FRACTION);
+            sInstance = new BitmapMemoryCache(maxKilobytes);
+        }
+        return sInstance;
+    }
+
+    private BitmapMemoryCache(int maxKilobytes) {
+        super(maxKilobytes);
+    }
+
+    /**
+     * Measures the memory of a bitmap
+     *
+     * @param key    The path of the thumbnail
+     * @param bitmap The decoded thumbnail
+     * @return The size of the bitmap, in kilobytes
+     */
+    @Override
+    protected int sizeOf(String key, Bitmap bitmap) {
+        return Math.max(1, bitmap.getByteCount() / 1024);
+    }
+}
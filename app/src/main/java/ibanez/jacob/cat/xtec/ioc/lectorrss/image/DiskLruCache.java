@@ -0,0 +1,511 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.HashUtils;
+
+/**
+ * A cache of files in a directory of the disk, bounded by its size in bytes.
+ * <p>
+ * Every entry is keyed by the SHA-1 hash of its full url, which is also the name of its file, so two
+ * urls never share a file. When the cache grows beyond its budget, the least recently used entries
+ * are evicted. Every entry may keep the validators ({@code ETag} and {@code Last-Modified}) sent by
+ * the server along with its content, for revalidating it later.
+ * <p>
+ * Every change is appended to a journal, which is replayed when the cache is opened, so the order
+ * of use survives restarts. Opening the cache also recovers it from a crash: entries whose file is
+ * gone are dropped, and files which are not in the journal (i.e. the temporary files of interrupted
+ * downloads) are deleted.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class DiskLruCache implements ImagePathResolver {
+
+    //files of the journal, and of its copy while it's rebuilt
+    static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    private static final String JOURNAL_HEADER = "lectorrss.DiskLruCache 1";
+
+    //operations of the journal
+    private static final String CLEAN = "CLEAN";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+
+    //the journal is rebuilt once it has at least this many redundant operations
+    private static final int MIN_REDUNDANT_OPERATIONS = 2000;
+
+    //suffix of the temporary files of the entries being written
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    //placeholder of a missing validator in the journal
+    private static final String NO_VALIDATOR = "-";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    //the open caches, a single one for every directory
+    private static final Map<File, DiskLruCache> sInstances = new HashMap<>();
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    //state of the cache, guarded by this
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize;
+    private int mRedundantOperations;
+    private Writer mJournal;
+
+    /**
+     * Opens the cache stored in the given directory, creating it if it doesn't exist.
+     * <p>
+     * A directory is only opened once, so every caller shares the same cache.
+     *
+     * @param directory The directory of the cache, which must not be used for anything else
+     * @param maxBytes  The maximum size of the cache in bytes
+     * @return The cache
+     * @throws IOException If the cache can't be opened
+     */
+    public static synchronized DiskLruCache open(File directory, long maxBytes) throws IOException {
+        DiskLruCache cache = sInstances.get(directory);
+        if (cache == null) {
+            cache = new DiskLruCache(directory, maxBytes);
+            sInstances.put(directory, cache);
+        }
+        return cache;
+    }
+
+    DiskLruCache(File directory, long maxBytes) throws IOException {
+        this.mDirectory = directory;
+        this.mMaxBytes = maxBytes;
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Can't create the cache directory " + mDirectory);
+        }
+        recover();
+    }
+
+    /**
+     * Resolves the path of the file of an url, which doesn't need to be cached yet
+     *
+     * @param imageUrl The url
+     * @return The path of the file of the url, or {@code null} if the url is {@code null}
+     */
+    @Override
+    public String resolve(String imageUrl) {
+        return imageUrl != null ? getFile(imageUrl).getPath() : null;
+    }
+
+    /**
+     * Gets the file of an url, which doesn't need to be cached yet
+     *
+     * @param url The url
+     * @return The file of the url
+     */
+    public File getFile(String url) {
+        return new File(mDirectory, HashUtils.sha1Hex(url));
+    }
+
+    /**
+     * Looks up the entry of an url, which becomes the most recently used one. It checks the file and
+     * writes to the journal, so it must not be called from the main thread.
+     *
+     * @param url The url
+     * @return The file of the entry, or {@code null} if the url is not cached
+     */
+    public synchronized File get(String url) {
+        String key = HashUtils.sha1Hex(url);
+        if (mEntries.get(key) == null) {
+            return null;
+        }
+
+        File file = new File(mDirectory, key);
+        if (!file.isFile()) {
+            //deleted behind the back of the cache
+            removeEntry(key);
+            return null;
+        }
+
+        try {
+            journal(READ + ' ' + key);
+        } catch (IOException ex) {
+            //only the order of use is lost, and only if the app is killed before the next write
+        }
+
+        return file;
+    }
+
+    /**
+     * Creates a temporary file for writing the content of an url, which is not visible in the cache
+     * until it's {@link #commit(String, File) committed}
+     *
+     * @param url The url
+     * @return The temporary file
+     * @throws IOException If the file can't be created
+     */
+    public File newTempFile(String url) throws IOException {
+        return File.createTempFile(HashUtils.sha1Hex(url), TEMP_SUFFIX, mDirectory);
+    }
+
+    /**
+     * Gets the {@code ETag} sent by the server along with the entry of an url
+     *
+     * @param url The url
+     * @return The {@code ETag}, or {@code null} if the url is not cached or there was none
+     */
+    public synchronized String getEtag(String url) {
+        Entry entry = mEntries.get(HashUtils.sha1Hex(url));
+        return entry != null ? entry.etag : null;
+    }
+
+    /**
+     * Gets the {@code Last-Modified} sent by the server along with the entry of an url
+     *
+     * @param url The url
+     * @return The {@code Last-Modified}, or {@code null} if the url is not cached or there was none
+     */
+    public synchronized String getLastModified(String url) {
+        Entry entry = mEntries.get(HashUtils.sha1Hex(url));
+        return entry != null ? entry.lastModified : null;
+    }
+
+    /**
+     * Publishes a completely written temporary file as the entry of an url, with no validators
+     *
+     * @param url      The url
+     * @param tempFile The temporary file, created by {@link #newTempFile(String)}
+     * @throws IOException If the entry can't be stored
+     * @see #commit(String, File, String, String)
+     */
+    public void commit(String url, File tempFile) throws IOException {
+        commit(url, tempFile, null, null);
+    }
+
+    /**
+     * Publishes a completely written temporary file as the entry of an url, replacing the previous
+     * one at once. The least recently used entries are evicted if the cache grows beyond its budget.
+     *
+     * @param url          The url
+     * @param tempFile     The temporary file, created by {@link #newTempFile(String)}
+     * @param etag         The {@code ETag} sent by the server along with the content, or {@code null}
+     * @param lastModified The {@code Last-Modified} sent by the server along with the content, or
+     *                     {@code null}
+     * @throws IOException If the entry can't be stored
+     */
+    public synchronized void commit(String url, File tempFile, String etag, String lastModified)
+            throws IOException {
+        String key = HashUtils.sha1Hex(url);
+        File file = new File(mDirectory, key);
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Can't store the entry of " + url + " in " + file);
+        }
+
+        Entry entry = new Entry(file.length(), etag, lastModified);
+        Entry previous = mEntries.put(key, entry);
+        if (previous != null) {
+            mSize -= previous.size;
+            mRedundantOperations++;
+        }
+        mSize += entry.size;
+
+        journal(cleanLine(key, entry));
+        trimToSize();
+    }
+
+    /**
+     * Removes the entry of an url, if any
+     *
+     * @param url The url
+     * @throws IOException If the removal can't be written to the journal
+     */
+    public synchronized void remove(String url) throws IOException {
+        String key = HashUtils.sha1Hex(url);
+        if (mEntries.containsKey(key)) {
+            removeEntry(key);
+            journal(REMOVE + ' ' + key);
+        }
+    }
+
+    /**
+     * @return The size of all the entries of the cache, in bytes
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * @return The maximum size of the cache, in bytes
+     */
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Replays the journal and makes it consistent with the files in the directory
+     *
+     * @throws IOException If the journal can't be rebuilt
+     */
+    private void recover() throws IOException {
+        readJournal();
+
+        //drop the entries whose file is gone, and trust the actual size of the rest
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            File file = new File(mDirectory, entry.getKey());
+            if (file.isFile()) {
+                entry.getValue().size = file.length();
+                mSize += file.length();
+            } else {
+                iterator.remove();
+            }
+        }
+
+        //delete any other file, such as the temporary ones of the writes interrupted by a crash
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.equals(JOURNAL_FILE) && !mEntries.containsKey(name)) {
+                    file.delete();
+                }
+            }
+        }
+
+        //start with a compact journal, and within the budget, which may have changed
+        rebuildJournal();
+        trimToSize();
+    }
+
+    /**
+     * Reads the entries from the journal, in order of use. Anything unexpected, such as a line
+     * truncated by a crash, is ignored.
+     */
+    private void readJournal() {
+        File journalFile = new File(mDirectory, JOURNAL_FILE);
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF_8));
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                //unknown format, start from scratch
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readJournalLine(line);
+            }
+        } catch (IOException ex) {
+            //keep the entries read so far
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    //nothing else to do, it has been read
+                }
+            }
+        }
+    }
+
+    private void readJournalLine(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length < 2 || !isKey(parts[1])) {
+            return;
+        }
+
+        String key = parts[1];
+        if (parts[0].equals(CLEAN) && (parts.length == 3 || parts.length == 5)) {
+            try {
+                //the validators are missing in the lines of the older journals
+                String etag = parts.length == 5 ? decodeValidator(parts[3]) : null;
+                String lastModified = parts.length == 5 ? decodeValidator(parts[4]) : null;
+                mEntries.put(key, new Entry(Long.parseLong(parts[2]), etag, lastModified));
+            } catch (IllegalArgumentException ex) {
+                //a truncated line
+            }
+        } else if (parts[0].equals(READ)) {
+            mEntries.get(key);
+        } else if (parts[0].equals(REMOVE)) {
+            mEntries.remove(key);
+        }
+    }
+
+    /**
+     * Writes a new journal with a single line for every entry, in order of use, and replaces the
+     * current one at once
+     *
+     * @throws IOException If the journal can't be written
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournal != null) {
+            mJournal.close();
+            mJournal = null;
+        }
+
+        File tempFile = new File(mDirectory, JOURNAL_FILE_TEMP);
+        Writer writer = newJournalWriter(tempFile, false);
+        try {
+            writer.write(JOURNAL_HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                writer.write(cleanLine(entry.getKey(), entry.getValue()));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tempFile.renameTo(new File(mDirectory, JOURNAL_FILE))) {
+            throw new IOException("Can't replace the journal of " + mDirectory);
+        }
+
+        mRedundantOperations = 0;
+        mJournal = newJournalWriter(new File(mDirectory, JOURNAL_FILE), true);
+    }
+
+    /**
+     * Appends an operation to the journal, rebuilding it when it has too many redundant operations
+     *
+     * @param line The operation
+     * @throws IOException If the journal can't be written
+     */
+    private void journal(String line) throws IOException {
+        if (mJournal == null) {
+            //a previous write failed, try with a brand new journal
+            rebuildJournal();
+        }
+
+        try {
+            mJournal.write(line);
+            mJournal.write('\n');
+            mJournal.flush();
+        } catch (IOException ex) {
+            mJournal.close();
+            mJournal = null;
+            throw ex;
+        }
+
+        if (!line.startsWith(CLEAN)) {
+            mRedundantOperations++;
+        }
+        if (mRedundantOperations >= MIN_REDUNDANT_OPERATIONS && mRedundantOperations >= mEntries.size()) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within its budget
+     *
+     * @throws IOException If the evictions can't be written to the journal
+     */
+    private void trimToSize() throws IOException {
+        while (mSize > mMaxBytes && !mEntries.isEmpty()) {
+            String eldest = mEntries.keySet().iterator().next();
+            removeEntry(eldest);
+            journal(REMOVE + ' ' + eldest);
+        }
+    }
+
+    private void removeEntry(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mSize -= entry.size;
+        }
+        new File(mDirectory, key).delete();
+    }
+
+    private static String cleanLine(String key, Entry entry) {
+        return CLEAN + ' ' + key + ' ' + entry.size + ' ' + encodeValidator(entry.etag) + ' ' +
+                encodeValidator(entry.lastModified);
+    }
+
+    /**
+     * Encodes a validator for the journal, so it has no spaces (i.e. the ones of a date)
+     */
+    private static String encodeValidator(String value) {
+        if (value == null) {
+            return NO_VALIDATOR;
+        }
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            //every platform supports UTF-8
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Decodes a validator of the journal
+     *
+     * @throws IllegalArgumentException If the validator is malformed
+     */
+    private static String decodeValidator(String value) {
+        if (NO_VALIDATOR.equals(value)) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Writer newJournalWriter(File file, boolean append) throws FileNotFoundException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), UTF_8));
+    }
+
+    /**
+     * Checks if a value is a valid key, so a corrupted journal never points out of the directory
+     */
+    private static boolean isKey(String value) {
+        if (value.length() != 40) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An entry of the cache: the size of its file and the validators sent by the server
+     */
+    private static class Entry {
+
+        private long size;
+        private final String etag;
+        private final String lastModified;
+
+        Entry(long size, String etag, String lastModified) {
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
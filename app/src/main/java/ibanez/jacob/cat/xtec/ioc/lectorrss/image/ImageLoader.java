@@ -0,0 +1,290 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.WorkerThreadFactory;
+
+/**
+ * Loads the cached thumbnails into {@link ImageView}s without blocking the main thread.
+ * <p>
+ * Thumbnails already in the {@link BitmapMemoryCache} are shown right away. The rest are decoded
+ * from the disk cache by a pool of background workers, while the view shows a placeholder, and are
+ * shown from the main thread once they're ready. Every load returns a {@link Request}, which has to
+ * be cancelled when the view is reused for another thumbnail, so the result of an earlier load never
+ * lands on the wrong view.
+ * <p>
+ * Thumbnails are decoded at the size they are shown, not at their full resolution: their bounds are
+ * read first, and they are subsampled to the smallest power of two which still covers the requested
+ * size. Jpeg thumbnails have no alpha, so they are decoded with 16 bits per pixel, and so are the
+ * opaque webp ones. Every size of a thumbnail is cached on its own.
+ * <p>
+ * Thumbnails can also be {@link #prefetch(String, int, int) prefetched} into memory before they're
+ * shown, by a worker of their own, so they never delay the thumbnails which are already visible.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class ImageLoader {
+
+    //Number of thumbnails decoded at the same time
+    private static final int DECODE_WORKERS = 2;
+
+    //Types of the images which never have alpha, or which may not have it
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+    private static final String MIME_TYPE_WEBP = "image/webp";
+
+    //Separator between the path and the size in the keys of the memory cache
+    private static final char SIZE_SEPARATOR = '@';
+
+    //the single instance
+    private static ImageLoader sInstance;
+
+    private final BitmapMemoryCache mMemoryCache;
+    private final ExecutorService mWorkers;
+    private final ExecutorService mPrefetchWorker;
+    private final Handler mMainHandler;
+
+    //keys of the thumbnails being prefetched right now, guarded by itself
+    private final Set<String> mPrefetching = new HashSet<>();
+
+    /**
+     * @return The image loader shared by the whole app
+     */
+    public static synchronized ImageLoader getInstance() {
+        if (sInstance == null) {
+            sInstance = new ImageLoader(BitmapMemoryCache.getInstance());
+        }
+        return sInstance;
+    }
+
+    private ImageLoader(BitmapMemoryCache memoryCache) {
+        this.mMemoryCache = memoryCache;
+        this.mWorkers = Executors.newFixedThreadPool(DECODE_WORKERS, new WorkerThreadFactory("decoder"));
+        this.mPrefetchWorker = Executors.newSingleThreadExecutor(new WorkerThreadFactory("prefetcher"));
+        this.mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Loads a cached thumbnail into a view. It must be called from the main thread.
+     *
+     * @param path        The path of the thumbnail in the disk cache, or {@code null} if there's none
+     * @param view        The view
+     * @param width       The width the thumbnail is shown at, in pixels
+     * @param height      The height the thumbnail is shown at, in pixels
+     * @param placeholder The resource shown until the thumbnail is ready, or if there's no thumbnail
+     * @return The pending request, or {@code null} if the view is already done
+     */
+    public Request load(String path, ImageView view, int width, int height, int placeholder) {
+        if (path == null || path.isEmpty()) {
+            view.setImageResource(placeholder);
+            return null;
+        }
+
+        Bitmap bitmap = mMemoryCache.get(getKey(path, width, height));
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return null;
+        }
+
+        view.setImageResource(placeholder);
+        Request request = new Request(path, width, height, view);
+        request.mFuture = mWorkers.submit(request);
+        return request;
+    }
+
+    /**
+     * Decodes a cached thumbnail into memory in the background, so it's shown right away when it's
+     * loaded. It does nothing if it's already in memory or being prefetched.
+     *
+     * @param path   The path of the thumbnail in the disk cache, or {@code null} if there's none
+     * @param width  The width the thumbnail will be shown at, in pixels
+     * @param height The height the thumbnail will be shown at, in pixels
+     */
+    public void prefetch(final String path, final int width, final int height) {
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+
+        final String key = getKey(path, width, height);
+        if (mMemoryCache.get(key) != null) {
+            return;
+        }
+        synchronized (mPrefetching) {
+            if (!mPrefetching.add(key)) {
+                return;
+            }
+        }
+
+        mPrefetchWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    decode(path, width, height);
+                } finally {
+                    synchronized (mPrefetching) {
+                        mPrefetching.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Estimates how many thumbnails of a size fit in memory at the same time
+     *
+     * @param width  The width of the thumbnails, in pixels
+     * @param height The height of the thumbnails, in pixels
+     * @return The number of thumbnails which fit in the memory cache
+     */
+    public int getCapacity(int width, int height) {
+        //most thumbnails are decoded with 16 bits per pixel
+        int kilobytesPerThumbnail = Math.max(1, width * height * 2 / 1024);
+        return mMemoryCache.maxSize() / kilobytesPerThumbnail;
+    }
+
+    /**
+     * Forgets every decoded size of the thumbnail of a path, so it's decoded again the next time
+     * it's loaded
+     *
+     * @param path The path of the thumbnail in the disk cache
+     */
+    public void invalidate(String path) {
+        String prefix = path + SIZE_SEPARATOR;
+        for (Map.Entry<String, Bitmap> entry : mMemoryCache.snapshot().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                mMemoryCache.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Decodes a thumbnail from the disk cache at the given size
+     *
+     * @param path   The path of the thumbnail in the disk cache
+     * @param width  The width the thumbnail is shown at, in pixels
+     * @param height The height the thumbnail is shown at, in pixels
+     * @return The thumbnail, or {@code null} if it's not cached yet
+     */
+    private Bitmap decode(String path, int width, int height) {
+        String key = getKey(path, width, height);
+
+        //another request may have decoded it meanwhile
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap == null) {
+            bitmap = decodeSampled(path, width, height);
+            if (bitmap != null) {
+                mMemoryCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes an image file, subsampled to the given size
+     *
+     * @param path   The path of the image
+     * @param width  The width the image is shown at, in pixels
+     * @param height The height the image is shown at, in pixels
+     * @return The image, or {@code null} if the file doesn't exist or it's not an image
+     */
+    static Bitmap decodeSampled(String path, int width, int height) {
+        //read only the bounds and the type, no pixels at all
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        if (MIME_TYPE_JPEG.equals(options.outMimeType) || MIME_TYPE_WEBP.equals(options.outMimeType)) {
+            //the decoder falls back to 32 bits per pixel if the webp image has alpha
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    /**
+     * Calculates the largest power of two which subsamples an image while keeping it at least as big
+     * as the requested size
+     *
+     * @param width     The width of the image
+     * @param height    The height of the image
+     * @param reqWidth  The requested width
+     * @param reqHeight The requested height
+     * @return The sample size
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String getKey(String path, int width, int height) {
+        return path + SIZE_SEPARATOR + width + 'x' + height;
+    }
+
+    /**
+     * A pending load of a thumbnail into a view
+     */
+    public final class Request implements Runnable {
+
+        private final String mPath;
+        private final int mWidth;
+        private final int mHeight;
+        private final ImageView mView;
+
+        //only touched from the main thread
+        private boolean mCancelled;
+        private Future<?> mFuture;
+
+        private Request(String path, int width, int height, ImageView view) {
+            this.mPath = path;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mView = view;
+        }
+
+        /**
+         * Cancels the load, so the view is never touched again by it. It must be called from the
+         * main thread.
+         */
+        public void cancel() {
+            mCancelled = true;
+            mFuture.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            final Bitmap bitmap = decode(mPath, mWidth, mHeight);
+            if (bitmap == null) {
+                //the placeholder is already there
+                return;
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    //cancelling happens on the main thread too, so this check is enough
+                    if (!mCancelled) {
+                        mView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The cache of the thumbnails of the app: a {@link DiskLruCache} in the app's cache directory, shared
+ * by every activity.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public final class ThumbnailCache {
+
+    //Directory of the cache, in the app's cache directory, and its size
+    private static final String DIRECTORY = "thumbnails";
+    private static final long MAX_BYTES = 20 * 1024 * 1024;
+
+    private ThumbnailCache() {
+    }
+
+    /**
+     * Opens the cache of the thumbnails, which recovers it if the app was killed while downloading.
+     * It's only opened once, later calls get the same cache.
+     *
+     * @param context The context
+     * @return The cache of the thumbnails
+     */
+    public static DiskLruCache open(Context context) {
+        File directory = new File(context.getCacheDir(), DIRECTORY);
+        try {
+            return DiskLruCache.open(directory, MAX_BYTES);
+        } catch (IOException ex) {
+            //without a cache the app can't work at all
+            throw new IllegalStateException("Can't open the cache of the thumbnails in " + directory, ex);
+        }
+    }
+}
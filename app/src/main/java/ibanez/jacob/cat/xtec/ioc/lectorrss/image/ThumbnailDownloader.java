@@ -0,0 +1,379 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.HttpClient;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.HttpDispatcher;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.Priority;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.WorkerThreadFactory;
+
+/**
+ * Downloads the thumbnails of the {@link RssItem}s to a {@link DiskLruCache}, several at the same time.
+ * <p>
+ * Downloads run in a pool of background workers, so the items can be shown right away and every
+ * thumbnail fills in as soon as its own download completes. The outcome of every download is
+ * delivered to a {@link Callback} through the given callback executor (i.e. the main thread).
+ * Every request goes through the shared {@link HttpClient}, with {@link Priority#IMAGE}, so the
+ * feeds always go first.
+ * <p>
+ * A thumbnail already in the cache is not downloaded again while it's fresh. Once it's stale, it's
+ * revalidated with a conditional request, made of the validators the server sent along with it
+ * ({@code ETag} and {@code Last-Modified}), so it's only downloaded again if it has changed. New
+ * thumbnails are written to a temporary file which is committed to the cache at the end, so a
+ * half-written file never looks like a cached thumbnail. Before committing it, a
+ * {@link ThumbnailTranscoder} may re-encode it into a more compact format.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class ThumbnailDownloader {
+
+    //Default number of workers of the pool
+    public static final int DEFAULT_WORKERS = 4;
+
+    //Timeouts of every single thumbnail, in milliseconds
+    static final int CONNECT_TIMEOUT = 5000;
+    static final int READ_TIMEOUT = 5000;
+    static final long MAX_DOWNLOAD_TIME = 20000L;
+
+    //Time a cached thumbnail is used without revalidating it, in milliseconds
+    static final long MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    //Http headers for conditional requests
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    //Size of the buffer for copying a thumbnail to the cache
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final DiskLruCache mCache;
+    private final ExecutorService mWorkers;
+    private final Executor mCallbackExecutor;
+    private final HttpClient mClient;
+    private final ThumbnailTranscoder mTranscoder;
+
+    //urls of the thumbnails being downloaded right now, guarded by itself
+    private final Set<String> mInFlight = new HashSet<>();
+
+    /**
+     * Creates a downloader with the given number of workers
+     *
+     * @param cache            The cache where the thumbnails are stored
+     * @param transcoder       The transcoder of the thumbnails before they are stored, or
+     *                         {@code null} for storing them as they are downloaded
+     * @param workers          The number of thumbnails downloaded at the same time
+     * @param callbackExecutor The executor which runs the callbacks, such as the main thread
+     */
+    public ThumbnailDownloader(DiskLruCache cache, ThumbnailTranscoder transcoder, int workers,
+                               Executor callbackExecutor) {
+        this.mCache = cache;
+        this.mTranscoder = transcoder;
+        this.mWorkers = Executors.newFixedThreadPool(workers, new WorkerThreadFactory("thumbnail"));
+        this.mCallbackExecutor = callbackExecutor;
+        this.mClient = HttpClient.getInstance();
+    }
+
+    /**
+     * Downloads the thumbnail of an item to the app's cache in the background.
+     * <p>
+     * It does nothing if the item has no thumbnail, or if it's being downloaded right now. The cache
+     * is looked up by the worker, as it touches the disk, so it can be called from the main thread.
+     * The callback is not called if the thumbnail is in the cache and still fresh, or if a stale
+     * thumbnail turns out to be unchanged.
+     *
+     * @param item     The item
+     * @param callback The callback for the outcome of the download
+     * @return {@code true} if the thumbnail has been queued, i.e. it was not being downloaded already
+     */
+    public boolean download(final RssItem item, final Callback callback) {
+        final String url = item.getThumbnail();
+        if (url == null) {
+            return false;
+        }
+
+        synchronized (mInFlight) {
+            if (!mInFlight.add(url)) {
+                return false;
+            }
+        }
+
+        try {
+            mWorkers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    IOException error = null;
+                    boolean stored = false;
+                    try {
+                        stored = fetchIfStale(url);
+                    } catch (IOException ex) {
+                        error = ex;
+                    } finally {
+                        synchronized (mInFlight) {
+                            mInFlight.remove(url);
+                        }
+                    }
+                    if (stored || error != null) {
+                        deliver(item, error, callback);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            //the downloader has been shut down
+            synchronized (mInFlight) {
+                mInFlight.remove(url);
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Downloads the thumbnail of an item to the app's cache right away, in the calling thread, i.e. a
+     * worker of its own.
+     * <p>
+     * It does the same checks as {@link #download(RssItem, Callback)}, so it does nothing if the
+     * thumbnail is fresh, or if it's being downloaded right now.
+     *
+     * @param item The item
+     * @return {@code true} if a new thumbnail has been stored
+     * @throws IOException If the download fails or takes too long
+     */
+    public boolean downloadNow(RssItem item) throws IOException {
+        String url = item.getThumbnail();
+        if (url == null) {
+            return false;
+        }
+
+        synchronized (mInFlight) {
+            if (!mInFlight.add(url)) {
+                return false;
+            }
+        }
+
+        try {
+            return fetchIfStale(url);
+        } finally {
+            synchronized (mInFlight) {
+                mInFlight.remove(url);
+            }
+        }
+    }
+
+    /**
+     * Stops every pending and running download. The callbacks of the running ones are never called.
+     */
+    public void shutdown() {
+        mWorkers.shutdownNow();
+    }
+
+    /**
+     * Checks if a thumbnail is in the cache and can be used without revalidating it
+     *
+     * @param file The file of the thumbnail in the cache, or {@code null} if it's not cached
+     * @return {@code true} if the thumbnail is cached and fresh
+     */
+    static boolean isFresh(File file) {
+        //the last modification of the file is the last time it was fetched or revalidated
+        return file != null && System.currentTimeMillis() - file.lastModified() < MAX_AGE;
+    }
+
+    /**
+     * Downloads a single thumbnail to the cache, unless the cached one is still fresh
+     *
+     * @param url The url of the thumbnail
+     * @return {@code true} if a new thumbnail has been stored
+     * @throws IOException If the download fails or takes too long
+     */
+    private boolean fetchIfStale(String url) throws IOException {
+        File file = mCache.get(url);
+        return !isFresh(file) && fetch(url, file);
+    }
+
+    /**
+     * Downloads a single thumbnail to the cache.
+     * <p>
+     * If it's already cached, the request is a conditional one, with the validators the server sent
+     * along with the cached thumbnail, and an unchanged thumbnail is kept. Without validators, the
+     * thumbnail is downloaded again.
+     * The entry is only replaced once the new thumbnail has been completely written, and transcoded.
+     *
+     * @param url  The url of the thumbnail
+     * @param file The file of the cached thumbnail, or {@code null} if it's not cached
+     * @return {@code true} if a new thumbnail has been stored, {@code false} if the cached one is unchanged
+     * @throws IOException If the download fails or takes too long
+     */
+    private boolean fetch(String url, File file) throws IOException {
+        URL imageUrl = new URL(url);
+        HttpDispatcher.Permit permit = mClient.acquire(imageUrl, Priority.IMAGE);
+        InputStream in = null;
+        OutputStream out = null;
+        File tempFile = null;
+        boolean stored = false;
+
+        try {
+            HttpURLConnection httpConn = mClient.openConnection(imageUrl);
+            //a single slow thumbnail must not hold a worker for long
+            httpConn.setConnectTimeout(CONNECT_TIMEOUT);
+            httpConn.setReadTimeout(READ_TIMEOUT);
+            if (file != null) {
+                //revalidate the stale thumbnail with the validators of the server, as the time of the
+                //file is only when it was fetched or revalidated
+                String etag = mCache.getEtag(url);
+                String lastModified = mCache.getLastModified(url);
+                if (etag != null) {
+                    httpConn.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+                }
+                if (lastModified != null) {
+                    httpConn.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+                }
+            }
+
+            int responseCode = httpConn.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && file != null) {
+                //still valid, so it's fresh again. Closing the empty body gives the connection back
+                mClient.discardResponse(httpConn);
+                file.setLastModified(System.currentTimeMillis());
+                return false;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                //anything but the whole thumbnail must never end up in the cache, and its connection
+                //must not be leaked
+                mClient.discardResponse(httpConn);
+                throw new IOException("Response code not OK for " + url + ". Response code: " +
+                        responseCode);
+            }
+
+            in = httpConn.getInputStream();
+            String etag = httpConn.getHeaderField(HEADER_ETAG);
+            String lastModified = httpConn.getHeaderField(HEADER_LAST_MODIFIED);
+
+            tempFile = mCache.newTempFile(url);
+            out = new FileOutputStream(tempFile);
+
+            long deadline = System.currentTimeMillis() + MAX_DOWNLOAD_TIME;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+                if (System.currentTimeMillis() > deadline) {
+                    throw new SocketTimeoutException("Download of " + url + " took too long");
+                }
+            }
+            out.close();
+            out = null;
+            in.close();
+            in = null;
+
+            //the network is not needed anymore, let other requests run while transcoding
+            permit.release();
+            tempFile = transcode(url, tempFile);
+
+            //replace the cached thumbnail at once
+            mCache.commit(url, tempFile, etag, lastModified);
+            stored = true;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            if (in != null) {
+                in.close();
+            }
+            permit.release();
+
+            //never leave a half-written thumbnail in the cache
+            if (tempFile != null && !stored) {
+                tempFile.delete();
+            }
+        }
+
+        return stored;
+    }
+
+    /**
+     * Transcodes a downloaded thumbnail, if there's a transcoder
+     *
+     * @param url      The url of the thumbnail
+     * @param tempFile The thumbnail as it was downloaded
+     * @return The temporary file to store in the cache, either the transcoded thumbnail or the
+     * downloaded one, if it can't be transcoded
+     * @throws IOException If the transcoded thumbnail can't be written
+     */
+    private File transcode(String url, File tempFile) throws IOException {
+        if (mTranscoder == null) {
+            return tempFile;
+        }
+
+        File transcoded = mCache.newTempFile(url);
+        boolean done = false;
+        try {
+            done = mTranscoder.transcode(tempFile, transcoded);
+        } finally {
+            if (!done) {
+                transcoded.delete();
+            }
+        }
+
+        if (!done) {
+            return tempFile;
+        }
+        tempFile.delete();
+        return transcoded;
+    }
+
+    /**
+     * Delivers the outcome of a download to the callback, through the callback executor
+     */
+    private void deliver(final RssItem item, final IOException error, final Callback callback) {
+        if (mWorkers.isShutdown()) {
+            return;
+        }
+
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (error == null) {
+                    callback.onThumbnailCached(item);
+                } else {
+                    callback.onThumbnailFailed(item, error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Callback for the outcome of the download of a thumbnail
+     */
+    public interface Callback {
+
+        /**
+         * The thumbnail of the item is in the app's cache
+         *
+         * @param item The item
+         */
+        void onThumbnailCached(RssItem item);
+
+        /**
+         * The thumbnail of the item could not be downloaded
+         *
+         * @param item  The item
+         * @param error The error
+         */
+        void onThumbnailFailed(RssItem item, IOException error);
+    }
+}
@@ -0,0 +1,24 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Re-encodes a downloaded thumbnail before it's stored in the {@link DiskLruCache}, i.e. to make it
+ * smaller and cheaper to decode
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface ThumbnailTranscoder {
+
+    /**
+     * Re-encodes a thumbnail
+     *
+     * @param source The thumbnail as it was downloaded
+     * @param target The file for the re-encoded thumbnail
+     * @return {@code true} if the thumbnail has been re-encoded, {@code false} if it has to be stored
+     * as it was downloaded, i.e. if it's not an image which can be decoded
+     * @throws IOException If the re-encoded thumbnail can't be written
+     */
+    boolean transcode(File source, File target) throws IOException;
+}
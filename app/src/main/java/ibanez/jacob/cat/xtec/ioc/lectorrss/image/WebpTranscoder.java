@@ -0,0 +1,83 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import android.graphics.Bitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link ThumbnailTranscoder} which scales every thumbnail down to the largest size it can be shown
+ * at, and re-encodes it as WebP. Smaller sizes are decoded from it, but it's never scaled up.
+ * <p>
+ * Feeds usually link big jpeg or png images, but the app only shows them as small thumbnails, so
+ * this shrinks the disk cache several times, and makes every later decode cheaper.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class WebpTranscoder implements ThumbnailTranscoder {
+
+    //Default quality of the encoding, from 0 to 100
+    public static final int DEFAULT_QUALITY = 80;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mQuality;
+
+    /**
+     * Creates a transcoder for the given size
+     *
+     * @param width   The largest width the thumbnails can be shown at, in pixels
+     * @param height  The largest height the thumbnails can be shown at, in pixels
+     * @param quality The quality of the encoding, from 0 to 100
+     */
+    public WebpTranscoder(int width, int height, int quality) {
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mQuality = quality;
+    }
+
+    @Override
+    public boolean transcode(File source, File target) throws IOException {
+        //subsampling is cheap, but it stops at the last power of two above the size
+        Bitmap sampled = ImageLoader.decodeSampled(source.getPath(), mWidth, mHeight);
+        if (sampled == null) {
+            return false;
+        }
+
+        Bitmap scaled = scale(sampled);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+        try {
+            if (!scaled.compress(Bitmap.CompressFormat.WEBP, mQuality, out)) {
+                throw new IOException("Can't encode the thumbnail " + source);
+            }
+        } finally {
+            out.close();
+            if (scaled != sampled) {
+                scaled.recycle();
+            }
+            sampled.recycle();
+        }
+
+        return true;
+    }
+
+    /**
+     * Scales a bitmap down, so it just covers the largest size the thumbnails can be shown at
+     *
+     * @param bitmap The bitmap
+     * @return The scaled bitmap, or the same bitmap if it's small enough
+     */
+    private Bitmap scale(Bitmap bitmap) {
+        float ratio = Math.max((float) mWidth / bitmap.getWidth(), (float) mHeight / bitmap.getHeight());
+        if (ratio >= 1f) {
+            return bitmap;
+        }
+
+        int width = Math.max(1, Math.round(bitmap.getWidth() * ratio));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * ratio));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+}
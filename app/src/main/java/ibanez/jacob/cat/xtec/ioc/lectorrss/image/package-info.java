@@ -0,0 +1,6 @@
+/**
+ * Package containing the download and caching of the thumbnails of the items
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
\ No newline at end of file
@@ -12,6 +12,8 @@ public class RssItem implements Serializable {
 
     private static final long serialVersionUID = 5416260651526471310L;
 
+    //the id in the repository, or 0 if it's not stored yet
+    private long id;
     private String title;
     private String link;
     private String author;
@@ -33,6 +35,14 @@ public class RssItem implements Serializable {
         this.imagePathInCache = imagePathInCache;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -120,7 +130,8 @@ public class RssItem implements Serializable {
     @Override
     public String toString() {
         return "RssItem{" +
-                "title='" + title + '\'' +
+                "id=" + id +
+                ", title='" + title + '\'' +
                 ", link='" + link + '\'' +
                 ", author='" + author + '\'' +
                 ", description='" + description + '\'' +
@@ -0,0 +1,127 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The http client shared by every request of the app.
+ * <p>
+ * It gives the same configuration to every connection, and bounds the number of concurrent requests
+ * through a single {@link HttpDispatcher}, so feeds go ahead of thumbnails and a single host is never
+ * flooded. Connections are kept alive and reused by the platform as long as the bodies of the
+ * responses are read to the end and closed, instead of disconnected. Keep-alive is on by default
+ * ({@code http.keepAlive}), and the platform keeps a few idle connections per host
+ * ({@code http.maxConnections}, 5 by default), which is enough for {@value #MAX_REQUESTS_PER_HOST}
+ * concurrent requests per host, so neither is changed.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class HttpClient {
+
+    //Timeouts of every connection, in milliseconds
+    public static final int CONNECT_TIMEOUT = 15000;
+    public static final int READ_TIMEOUT = 10000;
+
+    //Limits of concurrent requests
+    private static final int MAX_REQUESTS = 8;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    //Largest body of a discarded response which is read to the end, so its connection can be reused
+    private static final int MAX_DISCARDED_BYTES = 64 * 1024;
+
+    //the single instance
+    private static HttpClient sInstance;
+
+    private final HttpDispatcher mDispatcher;
+
+    /**
+     * @return The http client shared by the whole app
+     */
+    public static synchronized HttpClient getInstance() {
+        if (sInstance == null) {
+            sInstance = new HttpClient(new HttpDispatcher(MAX_REQUESTS, MAX_REQUESTS_PER_HOST));
+        }
+        return sInstance;
+    }
+
+    private HttpClient(HttpDispatcher dispatcher) {
+        this.mDispatcher = dispatcher;
+    }
+
+    /**
+     * Waits for a free slot for a request to the given url.
+     * <p>
+     * The returned permit has to be released once the body of the response has been read and closed.
+     *
+     * @param url      The url of the request
+     * @param priority The priority of the request
+     * @return The permit for running the request
+     * @throws InterruptedIOException If the thread is interrupted while waiting
+     */
+    public HttpDispatcher.Permit acquire(URL url, Priority priority) throws InterruptedIOException {
+        return mDispatcher.acquire(url.getHost(), priority);
+    }
+
+    /**
+     * Opens a new http GET connection to the given url, with the shared configuration
+     *
+     * @param url The url
+     * @return The connection, not connected yet
+     * @throws IOException If the connection can't be opened
+     */
+    public HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+
+        httpConn.setConnectTimeout(CONNECT_TIMEOUT);
+        httpConn.setReadTimeout(READ_TIMEOUT);
+        httpConn.setRequestMethod("GET");
+        httpConn.setDoInput(true);
+
+        return httpConn;
+    }
+
+    /**
+     * Gets rid of the body of a response which is not going to be used, such as the one of an error
+     * or of a "not modified" response, so its connection is never leaked.
+     * <p>
+     * A small body is read to the end and closed, so the connection goes back to the pool. A bigger
+     * one, or one which can't be read, is not worth it, so the connection is disconnected instead.
+     *
+     * @param httpConn The connection, whose response code has already been read
+     */
+    public void discardResponse(HttpURLConnection httpConn) {
+        InputStream body = null;
+        try {
+            body = httpConn.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ?
+                    httpConn.getErrorStream() : httpConn.getInputStream();
+            if (body == null) {
+                //there's no body at all
+                return;
+            }
+
+            byte[] buffer = new byte[4096];
+            int discarded = 0;
+            int count;
+            while ((count = body.read(buffer)) != -1) {
+                discarded += count;
+                if (discarded > MAX_DISCARDED_BYTES) {
+                    httpConn.disconnect();
+                    return;
+                }
+            }
+        } catch (IOException ex) {
+            httpConn.disconnect();
+        } finally {
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (IOException ex) {
+                    httpConn.disconnect();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.net;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds the number of http requests running at the same time, both in total and for every host.
+ * <p>
+ * Every request has to {@link #acquire(String, Priority)} a {@link Permit} before connecting, and
+ * release it once its body has been read. While there's no free slot, the requests wait in order of
+ * {@link Priority}, and of arrival for the same priority. A waiting request for a busy host never
+ * blocks the requests for other hosts.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class HttpDispatcher {
+
+    private final int mMaxRequests;
+    private final int mMaxRequestsPerHost;
+
+    //state of the dispatcher, guarded by this
+    private final List<Waiter> mWaiters = new ArrayList<>();
+    private final Map<String, Integer> mRunningPerHost = new HashMap<>();
+    private int mRunning;
+
+    /**
+     * Creates a dispatcher with the given limits
+     *
+     * @param maxRequests        The maximum number of requests running at the same time
+     * @param maxRequestsPerHost The maximum number of requests running at the same time for a single host
+     */
+    public HttpDispatcher(int maxRequests, int maxRequestsPerHost) {
+        this.mMaxRequests = maxRequests;
+        this.mMaxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Waits until there's a free slot for a request to the given host, and takes it
+     *
+     * @param host     The host of the request
+     * @param priority The priority of the request
+     * @return The permit for running the request, which has to be released once it's done
+     * @throws InterruptedIOException If the thread is interrupted while waiting
+     */
+    public synchronized Permit acquire(String host, Priority priority) throws InterruptedIOException {
+        Waiter waiter = new Waiter(host, priority);
+        enqueue(waiter);
+
+        try {
+            while (!isNextToRun(waiter)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            mWaiters.remove(waiter);
+            //the requests behind this one could be able to run now
+            notifyAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request to " + host);
+        }
+
+        //take the slot
+        mWaiters.remove(waiter);
+        mRunning++;
+        mRunningPerHost.put(host, getRunning(host) + 1);
+
+        //the requests behind this one could be for other hosts with free slots
+        notifyAll();
+
+        return new Permit(host);
+    }
+
+    /**
+     * @return The number of requests running right now
+     */
+    public synchronized int getRunningCount() {
+        return mRunning;
+    }
+
+    /**
+     * @return The number of requests waiting for a free slot right now
+     */
+    public synchronized int getWaitingCount() {
+        return mWaiters.size();
+    }
+
+    /**
+     * Releases the slot of a finished request
+     *
+     * @param host The host of the request
+     */
+    private synchronized void release(String host) {
+        mRunning--;
+        int running = getRunning(host) - 1;
+        if (running == 0) {
+            mRunningPerHost.remove(host);
+        } else {
+            mRunningPerHost.put(host, running);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Adds a waiter to the queue, behind every waiter with the same or higher priority
+     *
+     * @param waiter The waiter
+     */
+    private void enqueue(Waiter waiter) {
+        int index = mWaiters.size();
+        while (index > 0 && mWaiters.get(index - 1).priority.compareTo(waiter.priority) > 0) {
+            index--;
+        }
+        mWaiters.add(index, waiter);
+    }
+
+    /**
+     * Checks if the given waiter can take a slot right now.
+     * <p>
+     * It can if there's room for its host and no waiter ahead of it can run.
+     *
+     * @param waiter The waiter
+     * @return {@code true} if the waiter can run
+     */
+    private boolean isNextToRun(Waiter waiter) {
+        if (mRunning >= mMaxRequests) {
+            return false;
+        }
+
+        for (Waiter ahead : mWaiters) {
+            if (ahead == waiter) {
+                return hasRoom(waiter.host);
+            }
+            if (hasRoom(ahead.host)) {
+                //a waiter ahead of this one has to run first
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasRoom(String host) {
+        return getRunning(host) < mMaxRequestsPerHost;
+    }
+
+    private int getRunning(String host) {
+        Integer running = mRunningPerHost.get(host);
+        return running != null ? running : 0;
+    }
+
+    /**
+     * A request waiting for a free slot
+     */
+    private static class Waiter {
+
+        final String host;
+        final Priority priority;
+
+        Waiter(String host, Priority priority) {
+            this.host = host;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * The slot taken by a running request
+     */
+    public final class Permit {
+
+        private final String mHost;
+        private boolean mReleased;
+
+        private Permit(String host) {
+            this.mHost = host;
+        }
+
+        /**
+         * Releases the slot, so other requests can run. Releasing it more than once does nothing.
+         */
+        public void release() {
+            synchronized (HttpDispatcher.this) {
+                if (!mReleased) {
+                    mReleased = true;
+                    HttpDispatcher.this.release(mHost);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.net;
+
+/**
+ * Priorities of the http requests, from the highest to the lowest.
+ * <p>
+ * When several requests are waiting for a free slot, the ones with higher priority go first.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public enum Priority {
+    /**
+     * Requests for the xml of a feed, which the user is waiting for
+     */
+    FEED,
+    /**
+     * Requests for thumbnails, which can wait
+     */
+    IMAGE
+}
@@ -0,0 +1,6 @@
+/**
+ * Package containing the shared http subsystem of the app
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+package ibanez.jacob.cat.xtec.ioc.lectorrss.net;
\ No newline at end of file
@@ -0,0 +1,121 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Base class for every {@link FeedReader}, with the low level tag handling shared by all formats
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+abstract class AbstractFeedReader implements FeedReader {
+
+    //no namespaces used
+    static final String ns = null;
+
+    //the parser which owns this reader
+    private final RssItemParser mOwner;
+
+    AbstractFeedReader(RssItemParser owner) {
+        this.mOwner = owner;
+    }
+
+    /**
+     * Creates a new {@link RssItem}, resolving the path of its thumbnail in the app's cache.
+     * <p>
+     * The author and the categories take only a few different values, so they are interned.
+     *
+     * @param title       The title of the item
+     * @param link        The link of the item
+     * @param author      The author of the item
+     * @param description The description of the item
+     * @param pubDate     The publish date of the item
+     * @param categories  The categories of the item
+     * @param thumbnail   The url of the thumbnail of the item
+     * @return The new {@link RssItem}
+     */
+    RssItem newItem(String title, String link, String author, String description, String pubDate,
+                    String categories, String thumbnail) {
+        return new RssItem(title, link, mOwner.intern(author), description, pubDate,
+                mOwner.intern(categories), thumbnail, mOwner.getCachePath(thumbnail));
+    }
+
+    /**
+     * Reads the content of a given attribute from a given xml tag
+     *
+     * @param parser      The parser
+     * @param attribute   The attribute to read
+     * @param requiredTag The expected tag to read
+     * @return The value of the attribute in the tag
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    String readAttribute(XmlPullParser parser, String attribute, String requiredTag)
+            throws XmlPullParserException, IOException {
+        parser.require(XmlPullParser.START_TAG, ns, requiredTag);
+
+        String attributeValue = parser.getAttributeValue(null, attribute);
+        parser.nextTag();
+
+        parser.require(XmlPullParser.END_TAG, ns, requiredTag);
+
+        return attributeValue;
+    }
+
+    /**
+     * Reads the value of a given xml tag
+     *
+     * @param parser      The parser
+     * @param requiredTag The expected tag to read
+     * @return The value of the tag
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    String readText(XmlPullParser parser, String requiredTag) throws XmlPullParserException,
+            IOException {
+        parser.require(XmlPullParser.START_TAG, ns, requiredTag);
+
+        String text = null;
+        if (parser.next() == XmlPullParser.TEXT) {
+            text = parser.getText();
+            parser.nextTag();
+        }
+
+        parser.require(XmlPullParser.END_TAG, ns, requiredTag);
+
+        return text;
+    }
+
+    /**
+     * This skips a tag and all of its nested tags
+     *
+     * @param parser The parser
+     * @throws XmlPullParserException If an error occurs
+     * @throws IOException            If an error occurs
+     */
+    void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        //if not starting tag : ERROR
+        if (parser.getEventType() != XmlPullParser.START_TAG) {
+            throw new IllegalStateException();
+        }
+        int depth = 1;
+
+        //check number of start and end tags are the same
+        while (depth != 0) {
+            switch (parser.next()) {
+                case XmlPullParser.END_TAG:
+                    //if a tag is closed, subtract 1
+                    depth--;
+                    break;
+                case XmlPullParser.START_TAG:
+                    //if a tag is opened, sum 1
+                    depth++;
+                    break;
+            }
+        }
+    }
+}
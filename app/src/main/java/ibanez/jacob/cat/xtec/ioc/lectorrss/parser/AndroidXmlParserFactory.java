@@ -0,0 +1,18 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * {@link XmlParserFactory} which uses the {@link XmlPullParser} built in the Android runtime
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class AndroidXmlParserFactory implements XmlParserFactory {
+
+    @Override
+    public XmlPullParser newPullParser() {
+        return Xml.newPullParser();
+    }
+}
@@ -0,0 +1,232 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * {@link FeedReader} for Atom feeds, which have a {@code feed} root tag holding the {@code entry}
+ * tags.
+ * <p>
+ * Atom keeps in attributes some of the values which RSS keeps as text, such as the url of the
+ * links or the term of the categories.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+class AtomFeedReader extends AbstractFeedReader {
+
+    //atom elements
+    static final String ATOM_ROOT = "feed";
+    private static final String ATOM_ENTRY = "entry";
+    private static final String ATOM_TITLE = "title";
+    private static final String ATOM_LINK = "link";
+    private static final String ATOM_AUTHOR = "author";
+    private static final String ATOM_NAME = "name";
+    private static final String ATOM_SUMMARY = "summary";
+    private static final String ATOM_CONTENT = "content";
+    private static final String ATOM_PUBLISHED = "published";
+    private static final String ATOM_UPDATED = "updated";
+    private static final String ATOM_CATEGORY = "category";
+    private static final String ATOM_THUMBNAIL = "media:thumbnail";
+
+    //atom attributes
+    private static final String ATTR_REL = "rel";
+    private static final String ATTR_HREF = "href";
+    private static final String ATTR_TERM = "term";
+    private static final String ATTR_TYPE = "type";
+
+    //atom attribute values
+    private static final String REL_ALTERNATE = "alternate";
+    private static final String TYPE_XHTML = "xhtml";
+
+    //separator between several categories of a single entry
+    private static final String CATEGORY_SEPARATOR = ", ";
+
+    AtomFeedReader(RssItemParser owner) {
+        super(owner);
+    }
+
+    /**
+     * Reads a feed tag
+     * <p>
+     * In this implementation, it iterates over the entry tags inside this feed tag.
+     *
+     * @param parser The parser
+     * @param sink   The consumer of the {@link RssItem}s
+     * @return {@code false} if the sink has cancelled the parsing process, {@code true} otherwise
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    @Override
+    public boolean readFeed(XmlPullParser parser, ItemSink sink) throws XmlPullParserException, IOException {
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, ATOM_ROOT);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            if (name.equals(ATOM_ENTRY)) {
+                //hand the item to the sink and stop right here if it doesn't want more
+                if (!sink.onItem(readEntry(parser))) {
+                    return false;
+                }
+            } else {
+                skip(parser);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads an entry tag
+     * <p>
+     * In this implementation, it iterates over every child inside this entry tag, filling up
+     * every {@link RssItem} with required information. The summary is preferred over the content
+     * as the description, and the publish date over the update date.
+     *
+     * @param parser The parser
+     * @return The {@link RssItem} read
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private RssItem readEntry(XmlPullParser parser) throws XmlPullParserException, IOException {
+        //prepare variables for readability of the code
+        String title = null;
+        String link = null;
+        String author = null;
+        String summary = null;
+        String content = null;
+        String published = null;
+        String updated = null;
+        String categories = null;
+        String thumbnail = null;
+
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, ATOM_ENTRY);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            //operate on every tag depending on what we need
+            switch (name) {
+                case ATOM_TITLE:
+                    title = readTextConstruct(parser, ATOM_TITLE);
+                    break;
+                case ATOM_LINK:
+                    //only the alternate link points to the entry itself
+                    String rel = parser.getAttributeValue(null, ATTR_REL);
+                    String href = readAttribute(parser, ATTR_HREF, ATOM_LINK);
+                    if (link == null && (rel == null || rel.equals(REL_ALTERNATE))) {
+                        link = href;
+                    }
+                    break;
+                case ATOM_AUTHOR:
+                    author = readAuthor(parser);
+                    break;
+                case ATOM_SUMMARY:
+                    summary = readTextConstruct(parser, ATOM_SUMMARY);
+                    break;
+                case ATOM_CONTENT:
+                    content = readTextConstruct(parser, ATOM_CONTENT);
+                    break;
+                case ATOM_PUBLISHED:
+                    published = readText(parser, ATOM_PUBLISHED);
+                    break;
+                case ATOM_UPDATED:
+                    updated = readText(parser, ATOM_UPDATED);
+                    break;
+                case ATOM_CATEGORY:
+                    //an entry can have several categories
+                    String term = readAttribute(parser, ATTR_TERM, ATOM_CATEGORY);
+                    if (categories == null) {
+                        categories = term;
+                    } else if (term != null) {
+                        categories = categories + CATEGORY_SEPARATOR + term;
+                    }
+                    break;
+                case ATOM_THUMBNAIL:
+                    thumbnail = readAttribute(parser, "url", ATOM_THUMBNAIL);
+                    break;
+                default:
+                    skip(parser);
+                    break;
+            }
+        }
+
+        return newItem(title, link, author,
+                summary != null ? summary : content,
+                published != null ? published : updated,
+                categories, thumbnail);
+    }
+
+    /**
+     * Reads an author tag, whose value is the text of its name tag
+     *
+     * @param parser The parser
+     * @return The name of the author
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private String readAuthor(XmlPullParser parser) throws XmlPullParserException, IOException {
+        String author = null;
+
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, ATOM_AUTHOR);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            if (parser.getName().equals(ATOM_NAME)) {
+                author = readText(parser, ATOM_NAME);
+            } else {
+                skip(parser);
+            }
+        }
+
+        return author;
+    }
+
+    /**
+     * Reads an atom text construct, such as a title, a summary or a content tag.
+     * <p>
+     * Text and html constructs are read as plain text. Xhtml constructs hold nested markup instead
+     * of text, so they are skipped.
+     *
+     * @param parser      The parser
+     * @param requiredTag The expected tag to read
+     * @return The value of the tag, or {@code null} if it's a xhtml construct
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private String readTextConstruct(XmlPullParser parser, String requiredTag)
+            throws XmlPullParserException, IOException {
+        if (TYPE_XHTML.equals(parser.getAttributeValue(null, ATTR_TYPE))) {
+            skip(parser);
+            return null;
+        }
+
+        return readText(parser, requiredTag);
+    }
+}
@@ -0,0 +1,30 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Common interface for the readers of every feed format supported by the {@link RssItemParser}.
+ * <p>
+ * A reader is picked by the root tag of the xml, and it reads the whole document in a single pass,
+ * mapping every entry of the feed straight into a {@link RssItem}.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+interface FeedReader {
+
+    /**
+     * Reads the feed, starting at its root tag
+     *
+     * @param parser The parser, positioned at the root tag of the xml
+     * @param sink   The consumer of the {@link RssItem}s
+     * @return {@code false} if the sink has cancelled the parsing process, {@code true} otherwise
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    boolean readFeed(XmlPullParser parser, ItemSink sink) throws XmlPullParserException, IOException;
+}
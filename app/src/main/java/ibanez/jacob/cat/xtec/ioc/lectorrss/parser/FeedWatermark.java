@@ -0,0 +1,41 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * The "last seen" mark of a feed, used by the {@link RssItemParser} for parsing incrementally.
+ * <p>
+ * Feeds list their items from the newest to the oldest, so as soon as the parser reaches an item
+ * which is already known, the rest of the feed is known too and there's no need to read it.
+ * An item is known when its {@link RssItem#link} is one of the links of this watermark.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class FeedWatermark {
+
+    private final Set<String> mKnownLinks;
+
+    /**
+     * Creates a watermark from the links of the most recently stored items of a feed
+     *
+     * @param knownLinks The links of the items already stored
+     */
+    public FeedWatermark(Collection<String> knownLinks) {
+        this.mKnownLinks = new HashSet<>(knownLinks);
+    }
+
+    /**
+     * Checks if the given {@link RssItem} has reached this watermark
+     *
+     * @param item The item just parsed
+     * @return {@code true} if the item is already known, so the parsing process can stop.
+     * {@code false} otherwise.
+     */
+    public boolean isReachedBy(RssItem item) {
+        return item.getLink() != null && mKnownLinks.contains(item.getLink());
+    }
+}
@@ -0,0 +1,20 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Resolves where the image of a {@link RssItem} is stored in the app's cache, which is the value of
+ * {@link RssItem#getImagePathInCache()}.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface ImagePathResolver {
+
+    /**
+     * Resolves the path of an image in the app's cache. The image doesn't need to be cached yet.
+     *
+     * @param imageUrl The url of the image
+     * @return The path where the image is (or will be) cached
+     */
+    String resolve(String imageUrl);
+}
@@ -0,0 +1,25 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Consumer of the {@link RssItem}s produced by a {@link RssItemParser} while it's still reading
+ * the xml.
+ * <p>
+ * Every item is handed to the sink as soon as its tag is closed, in the same thread which is
+ * parsing, so the parser doesn't read any further until {@link #onItem(RssItem)} returns. This way
+ * a slow sink applies backpressure to the parser (and to the underlying stream) for free.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface ItemSink {
+
+    /**
+     * Receives a single parsed {@link RssItem}
+     *
+     * @param item The item which has just been read
+     * @return {@code true} if the parser has to continue reading, {@code false} for cancelling the
+     * parsing process, so the rest of the xml is not read at all
+     */
+    boolean onItem(RssItem item);
+}
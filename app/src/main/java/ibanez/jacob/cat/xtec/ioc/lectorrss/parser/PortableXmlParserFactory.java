@@ -0,0 +1,39 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * {@link XmlParserFactory} which uses any {@link XmlPullParser} implementation available in the
+ * classpath (such as kXML 2 on a plain JVM), through the standard {@link XmlPullParserFactory}
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class PortableXmlParserFactory implements XmlParserFactory {
+
+    private final XmlPullParserFactory mFactory;
+
+    /**
+     * Creates a factory for the default {@link XmlPullParser} implementation in the classpath
+     *
+     * @throws XmlPullParserException If there's no implementation in the classpath
+     */
+    public PortableXmlParserFactory() throws XmlPullParserException {
+        this(XmlPullParserFactory.newInstance());
+    }
+
+    /**
+     * Creates a factory from an already configured {@link XmlPullParserFactory}
+     *
+     * @param factory The factory of the parsers
+     */
+    public PortableXmlParserFactory(XmlPullParserFactory factory) {
+        this.mFactory = factory;
+    }
+
+    @Override
+    public XmlPullParser newPullParser() throws XmlPullParserException {
+        return mFactory.newPullParser();
+    }
+}
@@ -0,0 +1,148 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * {@link FeedReader} for RSS 1.0 (RDF) feeds, which have a {@code rdf:RDF} root tag with the
+ * {@code item} tags placed next to the {@code channel} tag, instead of inside it.
+ * <p>
+ * The author, publish date and categories of the items come from the Dublin Core module.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+class RdfFeedReader extends AbstractFeedReader {
+
+    //rdf elements
+    static final String RDF_ROOT = "rdf:RDF";
+    private static final String RDF_ITEM = "item";
+    private static final String RDF_TITLE = "title";
+    private static final String RDF_LINK = "link";
+    private static final String RDF_DESCRIPTION = "description";
+    private static final String RDF_DATE = "dc:date";
+    private static final String RDF_CREATOR = "dc:creator";
+    private static final String RDF_SUBJECT = "dc:subject";
+    private static final String RDF_THUMBNAIL = "media:thumbnail";
+
+    //separator between several subjects of a single item
+    private static final String SUBJECT_SEPARATOR = ", ";
+
+    RdfFeedReader(RssItemParser owner) {
+        super(owner);
+    }
+
+    /**
+     * Reads a rdf:RDF tag
+     * <p>
+     * In this implementation, it iterates over the item tags inside this tag, skipping the channel
+     *
+     * @param parser The parser
+     * @param sink   The consumer of the {@link RssItem}s
+     * @return {@code false} if the sink has cancelled the parsing process, {@code true} otherwise
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    @Override
+    public boolean readFeed(XmlPullParser parser, ItemSink sink) throws XmlPullParserException, IOException {
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, RDF_ROOT);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            if (name.equals(RDF_ITEM)) {
+                //hand the item to the sink and stop right here if it doesn't want more
+                if (!sink.onItem(readItem(parser))) {
+                    return false;
+                }
+            } else {
+                skip(parser);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads an item tag
+     * <p>
+     * In this implementation, it iterates over every child inside this item tag, filling up
+     * every {@link RssItem} with required information
+     *
+     * @param parser The parser
+     * @return The {@link RssItem} read
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private RssItem readItem(XmlPullParser parser) throws XmlPullParserException, IOException {
+        //prepare variables for readability of the code
+        String title = null;
+        String link = null;
+        String author = null;
+        String description = null;
+        String pubDate = null;
+        String categories = null;
+        String thumbnail = null;
+
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, RDF_ITEM);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            //operate on every tag depending on what we need
+            switch (name) {
+                case RDF_TITLE:
+                    title = readText(parser, RDF_TITLE);
+                    break;
+                case RDF_LINK:
+                    link = readText(parser, RDF_LINK);
+                    break;
+                case RDF_CREATOR:
+                    author = readText(parser, RDF_CREATOR);
+                    break;
+                case RDF_DESCRIPTION:
+                    description = readText(parser, RDF_DESCRIPTION);
+                    break;
+                case RDF_DATE:
+                    pubDate = readText(parser, RDF_DATE);
+                    break;
+                case RDF_SUBJECT:
+                    //an item can have several subjects
+                    String subject = readText(parser, RDF_SUBJECT);
+                    if (categories == null) {
+                        categories = subject;
+                    } else if (subject != null) {
+                        categories = categories + SUBJECT_SEPARATOR + subject;
+                    }
+                    break;
+                case RDF_THUMBNAIL:
+                    thumbnail = readAttribute(parser, "url", RDF_THUMBNAIL);
+                    break;
+                default:
+                    skip(parser);
+                    break;
+            }
+        }
+
+        return newItem(title, link, author, description, pubDate, categories, thumbnail);
+    }
+}
@@ -0,0 +1,175 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * {@link FeedReader} for RSS 2.0 feeds, which have a {@code rss} root tag with a single
+ * {@code channel} tag holding the {@code item} tags.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+class RssFeedReader extends AbstractFeedReader {
+
+    //rss elements
+    static final String RSS_ROOT = "rss";
+    private static final String RSS_CHANNEL = "channel";
+    private static final String RSS_ITEM = "item";
+    private static final String RSS_TITLE = "title";
+    private static final String RSS_LINK = "link";
+    private static final String RSS_DESCRIPTION = "description";
+    private static final String RSS_PUB_DATE = "pubDate";
+    private static final String RSS_AUTHOR = "author";
+    private static final String RSS_THUMBNAIL = "media:thumbnail";
+    private static final String RSS_KEYWORDS = "media:keywords";
+
+    RssFeedReader(RssItemParser owner) {
+        super(owner);
+    }
+
+    /**
+     * Reads a rss tag
+     * <p>
+     * In this implementation, it simply reads a channel tag
+     *
+     * @param parser The parser
+     * @param sink   The consumer of the {@link RssItem}s
+     * @return {@code false} if the sink has cancelled the parsing process, {@code true} otherwise
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    @Override
+    public boolean readFeed(XmlPullParser parser, ItemSink sink) throws XmlPullParserException, IOException {
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, RSS_ROOT);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            if (name.equals(RSS_CHANNEL)) {
+                if (!readChannel(parser, sink)) { //Read the channel tag
+                    return false;
+                }
+            } else {
+                skip(parser);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads a channel tag
+     * <p>
+     * In this implementation, it iterates over the item tags inside this channel tag.
+     *
+     * @param parser The parser
+     * @param sink   The consumer of the {@link RssItem}s
+     * @return {@code false} if the sink has cancelled the parsing process, {@code true} otherwise
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private boolean readChannel(XmlPullParser parser, ItemSink sink) throws XmlPullParserException, IOException {
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, RSS_CHANNEL);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            if (name.equals(RSS_ITEM)) {
+                //hand the item to the sink and stop right here if it doesn't want more
+                if (!sink.onItem(readItem(parser))) {
+                    return false;
+                }
+            } else {
+                skip(parser);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads an item tag
+     * <p>
+     * In this implementation, it iterates over every child inside this item tag, filling up
+     * every {@link RssItem} with required information
+     *
+     * @param parser The parser
+     * @return The {@link RssItem} read
+     * @throws XmlPullParserException If the parsing process goes wrong
+     * @throws IOException            If there's any Input/Output error
+     */
+    private RssItem readItem(XmlPullParser parser) throws XmlPullParserException, IOException {
+        //prepare variables for readability of the code
+        String title = null;
+        String link = null;
+        String author = null;
+        String description = null;
+        String pubDate = null;
+        String categories = null;
+        String thumbnail = null;
+
+        //check if tag is required one
+        parser.require(XmlPullParser.START_TAG, ns, RSS_ITEM);
+
+        //while end tag is not reached
+        while (parser.next() != XmlPullParser.END_TAG) {
+            //ignore all tags which are not start
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            //get tag name
+            String name = parser.getName();
+
+            //operate on every tag depending on what we need
+            switch (name) {
+                case RSS_TITLE:
+                    title = readText(parser, RSS_TITLE);
+                    break;
+                case RSS_LINK:
+                    link = readText(parser, RSS_LINK);
+                    break;
+                case RSS_AUTHOR:
+                    author = readText(parser, RSS_AUTHOR);
+                    break;
+                case RSS_DESCRIPTION:
+                    description = readText(parser, RSS_DESCRIPTION);
+                    break;
+                case RSS_PUB_DATE:
+                    pubDate = readText(parser, RSS_PUB_DATE);
+                    break;
+                case RSS_KEYWORDS:
+                    categories = readText(parser, RSS_KEYWORDS);
+                    break;
+                case RSS_THUMBNAIL:
+                    thumbnail = readAttribute(parser, "url", RSS_THUMBNAIL);
+                    break;
+                default:
+                    skip(parser);
+                    break;
+            }
+        }
+
+        return newItem(title, link, author, description, pubDate, categories, thumbnail);
+    }
+}
@@ -1,8 +1,5 @@
 package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
 
-import android.content.Context;
-import android.util.Xml;
-
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -12,289 +9,229 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.StringPool;
 
 /**
  * Low level object for parsing an xml from the internet to a {@link RssItem}
+ * <p>
+ * It doesn't depend on the Android runtime: the xml backend is given by a {@link XmlParserFactory},
+ * so it can also run on a plain JVM.
  *
  * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
  */
 public class RssItemParser {
 
-    //no namespaces used
-    private static final String ns = null;
+    //where the thumbnails are cached
+    private final ImagePathResolver mImagePaths;
+
+    //pool for the repeated values of the items
+    private final StringPool mStringPool;
 
-    //rss elements
-    private static final String RSS_ROOT = "rss";
-    private static final String RSS_CHANNEL = "channel";
-    private static final String RSS_ITEM = "item";
-    private static final String RSS_TITLE = "title";
-    private static final String RSS_LINK = "link";
-    private static final String RSS_DESCRIPTION = "description";
-    private static final String RSS_PUB_DATE = "pubDate";
-    private static final String RSS_AUTHOR = "author";
-    private static final String RSS_THUMBNAIL = "media:thumbnail";
-    private static final String RSS_KEYWORDS = "media:keywords";
+    //backend which creates the xml parsers
+    private final XmlParserFactory mParserFactory;
 
-    private Context mContext;
+    //readers of every supported feed format
+    private final FeedReader mRssReader = new RssFeedReader(this);
+    private final FeedReader mRdfReader = new RdfFeedReader(this);
+    private final FeedReader mAtomReader = new AtomFeedReader(this);
 
-    public RssItemParser(Context context) {
-        this.mContext = context;
+    /**
+     * Creates a parser with its own pool for the repeated values
+     *
+     * @param imagePaths    Resolver of the paths where the thumbnails are cached
+     * @param parserFactory The xml backend
+     */
+    public RssItemParser(ImagePathResolver imagePaths, XmlParserFactory parserFactory) {
+        this(imagePaths, parserFactory, new StringPool());
     }
 
     /**
-     * Parses the content of an {@link InputStream} to a collection of {@link RssItem}s
+     * Creates a parser which interns the repeated values of the items in the given pool, so the
+     * pool can be shared among several parsers (i.e. among several refreshes of the feed)
      *
-     * @param in The {@link InputStream} coming from an http connection of a rss feed
-     * @return The collection of {@link RssItem}s
-     * @throws XmlPullParserException If the parsing process goes wrong
-     * @throws IOException            If there's any Input/Output error
+     * @param imagePaths    Resolver of the paths where the thumbnails are cached
+     * @param parserFactory The xml backend
+     * @param stringPool    The pool for the repeated values
      */
-    public List<RssItem> parse(InputStream in) throws XmlPullParserException, IOException {
-        try {
-            //Get parser
-            XmlPullParser parser = Xml.newPullParser();
-            //Set no namespaces
-            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
-            //Set input
-            parser.setInput(in, null);
-            //get first tag
-            parser.nextTag();
-            //get the item list
-            return readRss(parser);
-        } finally {
-            in.close();
-        }
+    public RssItemParser(ImagePathResolver imagePaths, XmlParserFactory parserFactory,
+                         StringPool stringPool) {
+        this.mImagePaths = imagePaths;
+        this.mParserFactory = parserFactory;
+        this.mStringPool = stringPool;
     }
 
     /**
-     * Reads a rss tag
-     * <p>
-     * In this implementation, it simply reads a channel tag
+     * Parses the content of an {@link InputStream} to a collection of {@link RssItem}s
      *
-     * @param parser The parser
+     * @param in The {@link InputStream} coming from an http connection of a rss feed
      * @return The collection of {@link RssItem}s
      * @throws XmlPullParserException If the parsing process goes wrong
      * @throws IOException            If there's any Input/Output error
      */
-    private List<RssItem> readRss(XmlPullParser parser) throws XmlPullParserException, IOException {
-        List<RssItem> items = new ArrayList<>();
-
-        //check if tag is required one
-        parser.require(XmlPullParser.START_TAG, ns, RSS_ROOT);
-
-        //while end tag is not reached
-        while (parser.next() != XmlPullParser.END_TAG) {
-            //ignore all tags which are not start
-            if (parser.getEventType() != XmlPullParser.START_TAG) {
-                continue;
-            }
-
-            //get tag name
-            String name = parser.getName();
+    public List<RssItem> parse(InputStream in) throws XmlPullParserException, IOException {
+        final List<RssItem> items = new ArrayList<>();
 
-            if (name.equals(RSS_CHANNEL)) {
-                items = readChannel(parser); //Read the channel tag
-            } else {
-                skip(parser);
+        //collect every item in the list, never cancelling the process
+        parse(in, new ItemSink() {
+            @Override
+            public boolean onItem(RssItem item) {
+                return items.add(item);
             }
-        }
+        });
 
         return items;
     }
 
     /**
-     * Reads a channel tag
-     * <p>
-     * In this implementation, it iterates over the item tags inside this channel tag.
+     * Parses the content of an {@link InputStream} incrementally, collecting only the
+     * {@link RssItem}s newer than the given {@link FeedWatermark}
      *
-     * @param parser The parser
-     * @return The collection of {@link RssItem}s
+     * @param in        The {@link InputStream} coming from an http connection of a rss feed
+     * @param watermark The "last seen" mark of the feed
+     * @return The collection of new {@link RssItem}s
      * @throws XmlPullParserException If the parsing process goes wrong
      * @throws IOException            If there's any Input/Output error
+     * @see #parse(InputStream, ItemSink, FeedWatermark)
      */
-    private List<RssItem> readChannel(XmlPullParser parser) throws XmlPullParserException, IOException {
-        List<RssItem> items = new ArrayList<>();
-
-        //check if tag is required one
-        parser.require(XmlPullParser.START_TAG, ns, RSS_CHANNEL);
-
-        //while end tag is not reached
-        while (parser.next() != XmlPullParser.END_TAG) {
-            //ignore all tags which are not start
-            if (parser.getEventType() != XmlPullParser.START_TAG) {
-                continue;
-            }
-
-            //get tag name
-            String name = parser.getName();
+    public List<RssItem> parse(InputStream in, FeedWatermark watermark) throws XmlPullParserException,
+            IOException {
+        final List<RssItem> items = new ArrayList<>();
 
-            if (name.equals(RSS_ITEM)) {
-                items.add(readItem(parser));
-            } else {
-                skip(parser);
+        //collect every new item in the list
+        parse(in, new ItemSink() {
+            @Override
+            public boolean onItem(RssItem item) {
+                return items.add(item);
             }
-        }
+        }, watermark);
 
         return items;
     }
 
     /**
-     * Reads an item tag
+     * Parses the content of an {@link InputStream} incrementally, handing to the given
+     * {@link ItemSink} only the {@link RssItem}s newer than the given {@link FeedWatermark}.
      * <p>
-     * In this implementation, it iterates over every child inside this item tag, filling up
-     * every {@link RssItem} with required information and adding it to the collection
+     * As soon as an already known item is reached, the parsing process stops, so the rest of the
+     * xml is neither parsed nor read from the stream.
      *
-     * @param parser The parser
-     * @return The collection of {@link RssItem}s
+     * @param in        The {@link InputStream} coming from an http connection of a rss feed
+     * @param sink      The consumer of the new {@link RssItem}s
+     * @param watermark The "last seen" mark of the feed
+     * @return The number of new {@link RssItem}s handed to the sink
      * @throws XmlPullParserException If the parsing process goes wrong
      * @throws IOException            If there's any Input/Output error
      */
-    private RssItem readItem(XmlPullParser parser) throws XmlPullParserException, IOException {
-        //prepare variables for readability of the code
-        String title = null;
-        String link = null;
-        String author = null;
-        String description = null;
-        String pubDate = null;
-        String categories = null;
-        String thumbnail = null;
-        String imageCachePath = null;
-
-        //check if tag is required one
-        parser.require(XmlPullParser.START_TAG, ns, RSS_ITEM);
-
-        //while end tag is not reached
-        while (parser.next() != XmlPullParser.END_TAG) {
-            //ignore all tags which are not start
-            if (parser.getEventType() != XmlPullParser.START_TAG) {
-                continue;
+    public int parse(InputStream in, ItemSink sink, final FeedWatermark watermark)
+            throws XmlPullParserException, IOException {
+        //count here, so the item which reaches the watermark is not counted
+        final CountingItemSink countingSink = new CountingItemSink(sink);
+
+        parse(in, new ItemSink() {
+            @Override
+            public boolean onItem(RssItem item) {
+                //stop as soon as a known item is found, the rest of the feed is older
+                return !watermark.isReachedBy(item) && countingSink.onItem(item);
             }
+        });
 
-            //get tag name
-            String name = parser.getName();
+        return countingSink.mCount;
+    }
 
-            //operate on every tag depending on what we need
-            switch (name) {
-                case RSS_TITLE:
-                    title = readText(parser, RSS_TITLE);
-                    break;
-                case RSS_LINK:
-                    link = readText(parser, RSS_LINK);
-                    break;
-                case RSS_AUTHOR:
-                    author = readText(parser, RSS_AUTHOR);
-                    break;
-                case RSS_DESCRIPTION:
-                    description = readText(parser, RSS_DESCRIPTION);
-                    break;
-                case RSS_PUB_DATE:
-                    pubDate = readText(parser, RSS_PUB_DATE);
-                    break;
-                case RSS_KEYWORDS:
-                    categories = readText(parser, RSS_KEYWORDS);
-                    break;
-                case RSS_THUMBNAIL:
-                    thumbnail = readAttribute(parser, "url", RSS_THUMBNAIL);
-                    imageCachePath = getCachePath(thumbnail);
-                    break;
-                default:
-                    skip(parser);
-                    break;
-            }
+    /**
+     * Parses the content of an {@link InputStream}, handing every {@link RssItem} to the given
+     * {@link ItemSink} as soon as it's read.
+     * <p>
+     * No collection is built, so memory stays flat no matter how large the feed is. If the sink
+     * cancels the process, the rest of the xml is not read and the stream is closed.
+     * <p>
+     * The format of the feed is detected from its root tag, so RSS 2.0, RSS 1.0 (RDF) and Atom
+     * feeds are supported.
+     *
+     * @param in   The {@link InputStream} coming from an http connection of a rss feed
+     * @param sink The consumer of the {@link RssItem}s
+     * @return The number of {@link RssItem}s handed to the sink
+     * @throws XmlPullParserException If the parsing process goes wrong, or the format of the feed
+     *                                is not supported
+     * @throws IOException            If there's any Input/Output error
+     */
+    public int parse(InputStream in, ItemSink sink) throws XmlPullParserException, IOException {
+        try {
+            //Get parser
+            XmlPullParser parser = mParserFactory.newPullParser();
+            //Set no namespaces
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            //Set input
+            parser.setInput(in, null);
+            //get first tag
+            parser.nextTag();
+            //pick the reader by the root tag and stream the items to the sink
+            CountingItemSink countingSink = new CountingItemSink(sink);
+            getReader(parser).readFeed(parser, countingSink);
+            return countingSink.mCount;
+        } finally {
+            in.close();
         }
-
-        return new RssItem(title, link, author, description, pubDate, categories, thumbnail, imageCachePath);
     }
 
     /**
-     * Get cache path from the current context and persists the value were the image will be stored.
+     * Gets the {@link FeedReader} for the format of the feed, detected from its root tag
      *
-     * @param imageUrl The url of the image
-     * @return The path of the image stored in the app's cache
+     * @param parser The parser, positioned at the root tag of the xml
+     * @return The reader of the feed
+     * @throws XmlPullParserException If the format of the feed is not supported
      */
-    private String getCachePath(String imageUrl) {
-        String imagePathInCache = null;
-
-        if (imageUrl != null) {
-            String imageName = imageUrl.substring(imageUrl.lastIndexOf("/"), imageUrl.length());
-            imagePathInCache = mContext.getCacheDir().toString() + imageName;
+    private FeedReader getReader(XmlPullParser parser) throws XmlPullParserException {
+        String root = parser.getName();
+
+        switch (root) {
+            case RssFeedReader.RSS_ROOT:
+                return mRssReader;
+            case RdfFeedReader.RDF_ROOT:
+                return mRdfReader;
+            case AtomFeedReader.ATOM_ROOT:
+                return mAtomReader;
+            default:
+                throw new XmlPullParserException("Unsupported feed format: " + root, parser, null);
         }
-
-        return imagePathInCache;
     }
 
     /**
-     * Reads the content of a given attribute from a given xml tag
+     * Get cache path where the image will be stored.
      *
-     * @param parser      The parser
-     * @param attribute   The attribute to read
-     * @param requiredTag The expected tag to read
-     * @return The value of the attribute in the tag
-     * @throws XmlPullParserException If the parsing process goes wrong
-     * @throws IOException            If there's any Input/Output error
+     * @param imageUrl The url of the image
+     * @return The path of the image stored in the app's cache, or {@code null} if there's no image
      */
-    private String readAttribute(XmlPullParser parser, String attribute, String requiredTag)
-            throws XmlPullParserException, IOException {
-        parser.require(XmlPullParser.START_TAG, ns, requiredTag);
-
-        String attributeValue = parser.getAttributeValue(null, attribute);
-        parser.nextTag();
-
-        parser.require(XmlPullParser.END_TAG, ns, requiredTag);
-
-        return attributeValue;
+    String getCachePath(String imageUrl) {
+        return imageUrl != null ? mImagePaths.resolve(imageUrl) : null;
     }
 
     /**
-     * Reads the value of a given xml tag
+     * Interns a value which is repeated among the items of the feed, such as the author
      *
-     * @param parser      The parser
-     * @param requiredTag The expected tag to read
-     * @return The value of the tag
-     * @throws XmlPullParserException If the parsing process goes wrong
-     * @throws IOException            If there's any Input/Output error
+     * @param value The value
+     * @return The pooled instance equal to the value
      */
-    private String readText(XmlPullParser parser, String requiredTag) throws XmlPullParserException,
-            IOException {
-        parser.require(XmlPullParser.START_TAG, ns, requiredTag);
-
-        String text = null;
-        if (parser.next() == XmlPullParser.TEXT) {
-            text = parser.getText();
-            parser.nextTag();
-        }
-
-        parser.require(XmlPullParser.END_TAG, ns, requiredTag);
-
-        return text;
+    String intern(String value) {
+        return mStringPool.intern(value);
     }
 
     /**
-     * This skips a tag and all of its nested tags
-     *
-     * @param parser The parser
-     * @throws XmlPullParserException If an error occurs
-     * @throws IOException            If an error occurs
+     * Decorator of an {@link ItemSink} which counts the items handed to it
      */
-    private void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
-        //if not starting tag : ERROR
-        if (parser.getEventType() != XmlPullParser.START_TAG) {
-            throw new IllegalStateException();
+    private static class CountingItemSink implements ItemSink {
+
+        private final ItemSink mDelegate;
+        private int mCount;
+
+        CountingItemSink(ItemSink delegate) {
+            this.mDelegate = delegate;
         }
-        int depth = 1;
 
-        //check number of start and end tags are the same
-        while (depth != 0) {
-            switch (parser.next()) {
-                case XmlPullParser.END_TAG:
-                    //if a tag is closed, subtract 1
-                    depth--;
-                    break;
-                case XmlPullParser.START_TAG:
-                    //if a tag is opened, sum 1
-                    depth++;
-                    break;
-            }
+        @Override
+        public boolean onItem(RssItem item) {
+            mCount++;
+            return mDelegate.onItem(item);
         }
     }
 }
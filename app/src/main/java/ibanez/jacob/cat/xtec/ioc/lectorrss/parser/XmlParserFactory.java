@@ -0,0 +1,23 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Factory of the {@link XmlPullParser}s used by the {@link RssItemParser}.
+ * <p>
+ * This decouples the parsing logic from the xml backend, so the same feed readers run on Android
+ * or on a plain JVM, and the fastest backend can be picked for every platform.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface XmlParserFactory {
+
+    /**
+     * Creates a new {@link XmlPullParser}, ready to be configured
+     *
+     * @return The new parser
+     * @throws XmlPullParserException If the parser can't be created
+     */
+    XmlPullParser newPullParser() throws XmlPullParserException;
+}
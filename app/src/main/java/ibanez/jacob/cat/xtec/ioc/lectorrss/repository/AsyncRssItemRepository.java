@@ -0,0 +1,289 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.WorkerThreadFactory;
+
+/**
+ * Runs the operations of a {@link RssItemRepository} in the background, and delivers their results
+ * to a {@link Callback} on the main thread, so the database never blocks a frame.
+ * <p>
+ * Writes go to a single writer, one after the other, so they never wait for each other's locks.
+ * Reads go to a few readers, which run at the same time as the writer thanks to the write-ahead
+ * logging of the shared connection. Both are shared by every repository, just like the connection.
+ * <p>
+ * Every operation returns a {@link Task}, which can be cancelled from the main thread. The
+ * operations of the {@link ItemStore}, which are meant for workers already in the background (i.e. a
+ * sync), go to the same writer and readers, but wait for their outcome instead.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class AsyncRssItemRepository implements ItemStore {
+
+    //Number of reads which run at the same time
+    private static final int READERS = 2;
+
+    //the workers of every repository, which live as long as the process
+    private static final ExecutorService sWriter =
+            Executors.newSingleThreadExecutor(new WorkerThreadFactory("db-writer"));
+    private static final ExecutorService sReaders =
+            Executors.newFixedThreadPool(READERS, new WorkerThreadFactory("db-reader"));
+
+    private final RssItemRepository mRepository;
+    private final Executor mCallbackExecutor;
+
+    /**
+     * Creates a repository whose callbacks run on the main thread
+     *
+     * @param repository The repository which runs the operations
+     */
+    public AsyncRssItemRepository(RssItemRepository repository) {
+        this(repository, new MainThreadExecutor());
+    }
+
+    /**
+     * Creates a repository whose callbacks run on the given executor, i.e. for testing
+     *
+     * @param repository       The repository which runs the operations
+     * @param callbackExecutor The executor which runs the callbacks
+     */
+    AsyncRssItemRepository(RssItemRepository repository, Executor callbackExecutor) {
+        this.mRepository = repository;
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Gets the items page by page, with an optional keyword. Nothing is read yet, the pages are read
+     * with {@link #nextPage(RssItemPager, Callback)}.
+     *
+     * @param keyword  The keyword to look up after
+     * @param pageSize The number of items of every page
+     * @return The pager of the {@link RssItem}s
+     * @see RssItemRepository#getItems(String, int)
+     */
+    public RssItemPager getItems(String keyword, int pageSize) {
+        return mRepository.getItems(keyword, pageSize);
+    }
+
+    /**
+     * Creates a collection of new {@link RssItem}s in the database, in the background
+     *
+     * @param items    The items to create
+     * @param callback The callback for the items which were actually new
+     * @return The task
+     * @see RssItemRepository#insertItems(Collection)
+     */
+    public Task insertItems(final Collection<RssItem> items, Callback<List<RssItem>> callback) {
+        return submit(sWriter, new Callable<List<RssItem>>() {
+            @Override
+            public List<RssItem> call() {
+                return mRepository.insertItems(items);
+            }
+        }, callback);
+    }
+
+    /**
+     * Creates a collection of new {@link RssItem}s in the database through the single writer, and waits
+     * for it
+     *
+     * @param items The items to create
+     * @return The items which were actually new, in the same order
+     * @throws InterruptedException If the calling thread is interrupted while waiting, in which case
+     *                              the items may be created anyway
+     * @see RssItemRepository#insertItems(Collection)
+     */
+    @Override
+    public List<RssItem> storeItems(final Collection<RssItem> items) throws InterruptedException {
+        return submitAndWait(sWriter, new Callable<List<RssItem>>() {
+            @Override
+            public List<RssItem> call() {
+                return mRepository.insertItems(items);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the links of the most recently stored items through the readers, and waits for them
+     *
+     * @param limit The maximum number of links to retrieve
+     * @return A collection with the links of the most recently stored items
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @see RssItemRepository#getRecentLinks(int)
+     */
+    @Override
+    public List<String> getRecentLinks(final int limit) throws InterruptedException {
+        return submitAndWait(sReaders, new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                return mRepository.getRecentLinks(limit);
+            }
+        });
+    }
+
+    /**
+     * Reads the next page of items of a pager, in the background
+     *
+     * @param pager    The pager
+     * @param callback The callback for the items of the page
+     * @return The task
+     * @see RssItemPager#nextPage()
+     */
+    public Task nextPage(final RssItemPager pager, Callback<List<RssItem>> callback) {
+        return submit(sReaders, new Callable<List<RssItem>>() {
+            @Override
+            public List<RssItem> call() {
+                return pager.nextPage();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets the whole item with the given id, in the background
+     *
+     * @param id       The id of the item
+     * @param callback The callback for the item, or {@code null} if there's no item with that id
+     * @return The task
+     * @see RssItemRepository#getItemById(long)
+     */
+    public Task getItemById(final long id, Callback<RssItem> callback) {
+        return submit(sReaders, new Callable<RssItem>() {
+            @Override
+            public RssItem call() {
+                return mRepository.getItemById(id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs an operation in the given workers, and delivers its outcome to the callback
+     */
+    private <T> Task submit(ExecutorService workers, final Callable<T> operation, final Callback<T> callback) {
+        final Task task = new Task();
+        task.mFuture = workers.submit(new Runnable() {
+            @Override
+            public void run() {
+                T result = null;
+                RuntimeException error = null;
+                try {
+                    result = operation.call();
+                } catch (RuntimeException ex) {
+                    error = ex;
+                } catch (Exception ex) {
+                    //the operations only throw unchecked exceptions
+                    error = new IllegalStateException(ex);
+                }
+                deliver(task, result, error, callback);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Runs an operation in the given workers, and waits for its outcome
+     */
+    private static <T> T submitAndWait(ExecutorService workers, Callable<T> operation)
+            throws InterruptedException {
+        Future<T> future = workers.submit(operation);
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            //the operations only throw unchecked exceptions
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Delivers the outcome of an operation to the callback, through the callback executor, unless the
+     * task has been cancelled
+     */
+    private <T> void deliver(final Task task, final T result, final RuntimeException error,
+                             final Callback<T> callback) {
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //cancelling happens on the main thread too, so this check is enough
+                if (task.mCancelled) {
+                    return;
+                }
+                if (error == null) {
+                    callback.onResult(result);
+                } else {
+                    callback.onError(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Callback for the outcome of an operation of the repository
+     *
+     * @param <T> The type of the result
+     */
+    public interface Callback<T> {
+
+        /**
+         * The operation has completed
+         *
+         * @param result The result
+         */
+        void onResult(T result);
+
+        /**
+         * The operation has failed
+         *
+         * @param error The error
+         */
+        void onError(RuntimeException error);
+    }
+
+    /**
+     * A pending operation of the repository
+     */
+    public static final class Task {
+
+        //only touched from the main thread
+        private boolean mCancelled;
+        private Future<?> mFuture;
+
+        private Task() {
+        }
+
+        /**
+         * Cancels the operation, so its callback is never called. An operation which is not running
+         * yet never runs, but a running one, i.e. a write, still completes. It must be called from the
+         * main thread.
+         */
+        public void cancel() {
+            mCancelled = true;
+            mFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Runs the callbacks on the main thread
+     */
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            mHandler.post(runnable);
+        }
+    }
+}
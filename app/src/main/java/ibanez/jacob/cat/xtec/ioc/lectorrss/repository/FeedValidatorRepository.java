@@ -0,0 +1,48 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Class for persisting the http validators ({@code ETag} and {@code Last-Modified}) of every feed,
+ * so the next request for a feed can be a conditional one.
+ * <p>
+ * The validators are kept in the app's {@link SharedPreferences}, keyed by the url of the feed.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class FeedValidatorRepository implements ValidatorStore {
+
+    //Preferences file
+    private static final String PREFERENCES_NAME = "FEED_VALIDATORS";
+
+    //Suffixes of the keys of every feed
+    private static final String KEY_ETAG = ".ETAG";
+    private static final String KEY_LAST_MODIFIED = ".LAST_MODIFIED";
+
+    //class members
+    private SharedPreferences mPreferences;
+
+    //Constructor
+    public FeedValidatorRepository(Context context) {
+        this.mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public String getEtag(String feedUrl) {
+        return mPreferences.getString(feedUrl + KEY_ETAG, null);
+    }
+
+    @Override
+    public String getLastModified(String feedUrl) {
+        return mPreferences.getString(feedUrl + KEY_LAST_MODIFIED, null);
+    }
+
+    @Override
+    public void saveValidators(String feedUrl, String etag, String lastModified) {
+        mPreferences.edit()
+                .putString(feedUrl + KEY_ETAG, etag)
+                .putString(feedUrl + KEY_LAST_MODIFIED, lastModified)
+                .apply();
+    }
+}
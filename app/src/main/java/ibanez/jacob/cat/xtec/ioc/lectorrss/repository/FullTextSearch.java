@@ -0,0 +1,86 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Helpers for the full-text search of the items, on top of a sqlite FTS4 table
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+final class FullTextSearch {
+
+    //Operator of FTS4 for prefix queries
+    private static final char PREFIX = '*';
+
+    private FullTextSearch() {
+    }
+
+    /**
+     * Builds the full-text query of a keyword typed by the user: every word matches any term which
+     * starts with it, and every word has to match.
+     * <p>
+     * Anything which is not a letter or a digit splits words, so the user can't type a malformed query
+     * by accident, i.e. with an unbalanced quote.
+     *
+     * @param keyword The keyword
+     * @return The query, or {@code null} if the keyword has no words at all
+     */
+    static String toMatchQuery(String keyword) {
+        StringBuilder query = new StringBuilder();
+        int length = keyword.length();
+        int i = 0;
+
+        while (i < length) {
+            //skip the separators
+            while (i < length && !Character.isLetterOrDigit(keyword.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(keyword.charAt(i))) {
+                i++;
+            }
+
+            if (i > start) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append(keyword, start, i).append(PREFIX);
+            }
+        }
+
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Scores the relevance of a matching row from the {@code matchinfo(table, 'pcx')} of the row.
+     * <p>
+     * Every hit in a column counts as much as the weight of the column, and the hits of the rarest
+     * words count the most.
+     *
+     * @param matchinfo The result of {@code matchinfo} with the {@code pcx} format
+     * @param weights   The weight of every column of the full-text table, in order
+     * @return The relevance of the row, the higher the better
+     */
+    static double score(byte[] matchinfo, double[] weights) {
+        //an array of 32 bits unsigned integers, in the byte order of the device
+        ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < weights.length; column++) {
+                //hits in this row, and hits in all the rows, of this phrase in this column
+                int offset = 4 * (2 + 3 * (phrase * columns + column));
+                int hitsInRow = buffer.getInt(offset);
+                int hitsInAllRows = buffer.getInt(offset + 4);
+                if (hitsInRow > 0) {
+                    score += weights[column] * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+
+        return score;
+    }
+}
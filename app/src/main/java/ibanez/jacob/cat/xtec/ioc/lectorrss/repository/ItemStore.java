@@ -0,0 +1,38 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Stores the items of a feed while it's synced, i.e. by the
+ * {@link ibanez.jacob.cat.xtec.ioc.lectorrss.sync.SyncEngine}.
+ * <p>
+ * It's meant for workers which are already in the background: every method waits until it's done.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface ItemStore {
+
+    /**
+     * Retrieves the {@link RssItem#link}s of the most recently stored items, the newest first
+     *
+     * @param limit The maximum number of links to retrieve
+     * @return A collection with the links of the most recently stored items
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @see RssItemRepository#getRecentLinks(int)
+     */
+    List<String> getRecentLinks(int limit) throws InterruptedException;
+
+    /**
+     * Creates a collection of new {@link RssItem}s, skipping the ones which already exist
+     *
+     * @param items The items to create
+     * @return The items which were actually new, in the same order
+     * @throws InterruptedException If the calling thread is interrupted while waiting, in which case
+     *                              the items may be created anyway
+     * @see RssItemRepository#insertItems(Collection)
+     */
+    List<RssItem> storeItems(Collection<RssItem> items) throws InterruptedException;
+}
@@ -0,0 +1,91 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+/**
+ * Reads the {@link RssItem}s of a {@link RssItemRepository} one page at a time, so only the items
+ * which are shown are ever in memory.
+ * <p>
+ * All the items are paged by their id: every page starts right after the last item of the previous
+ * one. The items of a search are ranked first, by id only, and then the rows of every page are read.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class RssItemPager {
+
+    //Maximum number of items of a page, which is bounded by the parameters of a sqlite statement
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final RssItemRepository mRepository;
+    private final String mQuery;
+    private final int mPageSize;
+
+    //the id of the last item read, when there's no search
+    private long mLastId;
+
+    //the ids of the matching items, the most relevant first, and the next one to read
+    private long[] mRankedIds;
+    private int mNext;
+
+    //read from any thread
+    private volatile boolean mHasMore = true;
+
+    /**
+     * Creates a pager of the items of a repository
+     *
+     * @param repository The repository
+     * @param query      The full-text query, or {@code null} for all the items
+     * @param pageSize   The number of items of every page
+     */
+    RssItemPager(RssItemRepository repository, String query, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("The page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        this.mRepository = repository;
+        this.mQuery = query;
+        this.mPageSize = pageSize;
+    }
+
+    /**
+     * @return {@code true} if there may be more items to read
+     */
+    public boolean hasMore() {
+        return mHasMore;
+    }
+
+    /**
+     * Reads the next page of items. It can be called from any thread, one page at a time.
+     *
+     * @return The items, which are empty if there are no more
+     */
+    public synchronized List<RssItem> nextPage() {
+        if (!mHasMore) {
+            return Collections.emptyList();
+        }
+
+        List<RssItem> page;
+        if (mQuery == null) {
+            page = mRepository.getItemsAfter(mLastId, mPageSize);
+            if (!page.isEmpty()) {
+                mLastId = page.get(page.size() - 1).getId();
+            }
+            //a short page is the last one
+            mHasMore = page.size() == mPageSize;
+        } else {
+            if (mRankedIds == null) {
+                mRankedIds = mRepository.searchItemIds(mQuery);
+            }
+            int to = Math.min(mNext + mPageSize, mRankedIds.length);
+            page = mNext < to ? mRepository.getItemsById(mRankedIds, mNext, to)
+                    : Collections.<RssItem>emptyList();
+            mNext = to;
+            mHasMore = mNext < mRankedIds.length;
+        }
+
+        return page;
+    }
+}
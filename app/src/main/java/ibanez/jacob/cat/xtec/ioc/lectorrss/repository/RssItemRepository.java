@@ -6,17 +6,34 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.HashUtils;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.StringPool;
 
 /**
  * Class for manipulating {@link RssItem} objects from the database.
  * <p>
- * It encapsulates all access to the database, so it manages creating and closing connections itself.
+ * It encapsulates all access to the database, so it manages the connection itself. A single
+ * connection is shared by every repository for the whole life of the process, in write-ahead logging
+ * mode, so readers (i.e. searches) never wait for a write in progress.
+ * <p>
+ * Every item is identified by a key, which is the hash of its link, so the same item is stored only
+ * once, no matter how many other values it shares with other items.
+ * <p>
+ * The title, the description and the categories of the items are indexed in a full-text table,
+ * which is kept in sync by triggers, so searching doesn't need to scan every item.
  *
  * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
  */
@@ -27,6 +44,7 @@ public class RssItemRepository {
 
     //Database columns
     private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_ITEM_KEY = "ITEM_KEY";
     private static final String COLUMN_TITLE = "TITLE";
     private static final String COLUMN_LINK = "LINK";
     private static final String COLUMN_AUTHOR = "AUTHOR";
@@ -34,48 +52,156 @@ public class RssItemRepository {
     private static final String COLUMN_PUB_DATE = "PUB_DATE";
     private static final String COLUMN_CATEGORIES = "CATEGORIES";
     private static final String COLUMN_THUMBNAIL = "THUMBNAIL";
-    private static final String COLUMN_IMAGE_CACHE_PATH = "IMAGE_CACHE_PATH";
 
     //Database variables
     private static final String DB_NAME = "FEEDS_DB";
     private static final String TABLE_ITEMS = "ITEMS";
-    private static final int VERSION = 1;
+    private static final String TABLE_ITEMS_V1 = "ITEMS_V1";
+    private static final String TABLE_ITEMS_FTS = "ITEMS_FTS";
+    private static final int VERSION = 3;
+
+    //Weights of the columns of the full-text table for the relevance: title, description, categories
+    private static final double[] SEARCH_WEIGHTS = {3.0, 1.0, 2.0};
+
+    //Columns of the rows of the list of items, the whole item is only read when it's opened
+    private static final String[] LIST_COLUMNS = {COLUMN_ID, COLUMN_TITLE, COLUMN_THUMBNAIL};
+
+    //Size of the page cache of the connection, in kilobytes when negative
+    private static final int CACHE_SIZE = -2048;
 
-    //Database queries
+    //Database queries. The path of the image is not stored, it's resolved from the thumbnail
     private static final String CREATE_TABLE_ITEMS =
             "CREATE TABLE IF NOT EXISTS " + TABLE_ITEMS + " (" +
                     COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    COLUMN_TITLE + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_LINK + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_AUTHOR + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_DESCRIPTION + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_PUB_DATE + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_CATEGORIES + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_THUMBNAIL + " TEXT NOT NULL UNIQUE," +
-                    COLUMN_IMAGE_CACHE_PATH + " TEXT NOT NULL UNIQUE" +
+                    COLUMN_ITEM_KEY + " TEXT NOT NULL UNIQUE," +
+                    COLUMN_TITLE + " TEXT," +
+                    COLUMN_LINK + " TEXT," +
+                    COLUMN_AUTHOR + " TEXT," +
+                    COLUMN_DESCRIPTION + " TEXT," +
+                    COLUMN_PUB_DATE + " TEXT," +
+                    COLUMN_CATEGORIES + " TEXT," +
+                    COLUMN_THUMBNAIL + " TEXT" +
                     ");";
 
+    //full-text index of the items, which takes the content from the items table itself. The unicode
+    //tokenizer folds the case of any letter, not only ascii, but old devices may lack it
+    private static final String CREATE_TABLE_ITEMS_FTS =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_ITEMS_FTS + " USING fts4(" +
+                    "content=\"" + TABLE_ITEMS + "\", " +
+                    COLUMN_TITLE + ", " +
+                    COLUMN_DESCRIPTION + ", " +
+                    COLUMN_CATEGORIES;
+    private static final String FTS_TOKENIZER = ", tokenize=unicode61";
+
+    //triggers which keep the full-text index in sync with the items
+    private static final String FTS_VALUES =
+            "(docid, " + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_CATEGORIES + ") VALUES (" +
+                    "new." + COLUMN_ID + ", new." + COLUMN_TITLE + ", new." + COLUMN_DESCRIPTION + ", new." +
+                    COLUMN_CATEGORIES + ");";
+    private static final String[] CREATE_FTS_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS ITEMS_FTS_BEFORE_UPDATE BEFORE UPDATE ON " + TABLE_ITEMS + " BEGIN " +
+                    "DELETE FROM " + TABLE_ITEMS_FTS + " WHERE docid = old." + COLUMN_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS ITEMS_FTS_BEFORE_DELETE BEFORE DELETE ON " + TABLE_ITEMS + " BEGIN " +
+                    "DELETE FROM " + TABLE_ITEMS_FTS + " WHERE docid = old." + COLUMN_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS ITEMS_FTS_AFTER_UPDATE AFTER UPDATE ON " + TABLE_ITEMS + " BEGIN " +
+                    "INSERT INTO " + TABLE_ITEMS_FTS + FTS_VALUES + " END;",
+            "CREATE TRIGGER IF NOT EXISTS ITEMS_FTS_AFTER_INSERT AFTER INSERT ON " + TABLE_ITEMS + " BEGIN " +
+                    "INSERT INTO " + TABLE_ITEMS_FTS + FTS_VALUES + " END;"
+    };
+
+    //the ids of the items matching a full-text query, with the info for scoring their relevance. The
+    //index alone answers it, no item is read
+    private static final String SEARCH_ITEMS =
+            "SELECT docid, matchinfo(" + TABLE_ITEMS_FTS + ", 'pcx') FROM " + TABLE_ITEMS_FTS +
+                    " WHERE " + TABLE_ITEMS_FTS + " MATCH ?";
+
+    //an item whose key already exists is skipped
+    private static final String INSERT_ITEM =
+            "INSERT OR IGNORE INTO " + TABLE_ITEMS + " (" +
+                    COLUMN_ITEM_KEY + ", " +
+                    COLUMN_TITLE + ", " +
+                    COLUMN_LINK + ", " +
+                    COLUMN_AUTHOR + ", " +
+                    COLUMN_DESCRIPTION + ", " +
+                    COLUMN_PUB_DATE + ", " +
+                    COLUMN_CATEGORIES + ", " +
+                    COLUMN_THUMBNAIL +
+                    ") VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+
+    //copies an item of the version 1 of the schema, keeping its id, so the order of the items is kept
+    private static final String MIGRATE_ITEM =
+            "INSERT OR IGNORE INTO " + TABLE_ITEMS + " (" +
+                    COLUMN_ID + ", " +
+                    COLUMN_ITEM_KEY + ", " +
+                    COLUMN_TITLE + ", " +
+                    COLUMN_LINK + ", " +
+                    COLUMN_AUTHOR + ", " +
+                    COLUMN_DESCRIPTION + ", " +
+                    COLUMN_PUB_DATE + ", " +
+                    COLUMN_CATEGORIES + ", " +
+                    COLUMN_THUMBNAIL +
+                    ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
     //class members
     private DBHelp mHelp;
     private SQLiteDatabase mDatabase;
+    private StringPool mStringPool = new StringPool();
+    private ImagePathResolver mImagePaths;
 
-    //Constructor
-    public RssItemRepository(Context context) {
-        this.mHelp = new DBHelp(context);
+    /**
+     * Creates a repository whose items have their images resolved through the given resolver, so
+     * they always point to the current cache, whatever path was stored with them
+     *
+     * @param context    The context
+     * @param imagePaths Resolver of the paths where the thumbnails are cached
+     */
+    public RssItemRepository(Context context, ImagePathResolver imagePaths) {
+        this(context, imagePaths, DB_NAME);
+    }
+
+    /**
+     * Creates a repository on the database with the given name, i.e. for testing
+     *
+     * @param context    The context
+     * @param imagePaths Resolver of the paths where the thumbnails are cached
+     * @param dbName     The name of the database
+     */
+    RssItemRepository(Context context, ImagePathResolver imagePaths, String dbName) {
+        this.mHelp = DBHelp.getInstance(context, dbName);
+        this.mImagePaths = imagePaths;
+    }
+
+    /**
+     * Creates a repository on a connection which is opened and closed by the caller, i.e. for
+     * benchmarking other ways of managing the connection
+     *
+     * @param database   The connection, with the schema already created
+     * @param imagePaths Resolver of the paths where the thumbnails are cached
+     * @see #createSchema(SQLiteDatabase)
+     */
+    RssItemRepository(SQLiteDatabase database, ImagePathResolver imagePaths) {
+        this.mDatabase = database;
+        this.mImagePaths = imagePaths;
     }
 
-    //Open and close methods
+    //Open method
 
     /**
-     * This method opens the connection to the database.
+     * This method gets the shared connection to the database, opening it the first time.
      * <p>
-     * You can specify if you want only read access or both read/write access
+     * You can specify if you want only read access or both read/write access. It's never closed, the
+     * connection lives as long as the process
      *
      * @param withWriteAccess If {@code true}, the connection can write to the database
      * @return A ready-to-use connection to the database
      * @throws SQLException If an error occurs
      */
     private RssItemRepository open(boolean withWriteAccess) throws SQLException {
+        if (mHelp == null) {
+            //the connection belongs to the caller
+            return this;
+        }
+
         if (withWriteAccess) {
             mDatabase = mHelp.getWritableDatabase();
         } else {
@@ -84,13 +210,6 @@ public class RssItemRepository {
         return this;
     }
 
-    /**
-     * Closes the connection to the database
-     */
-    private void close() {
-        mHelp.close();
-    }
-
     //Methods for manipulating data
 
     /**
@@ -99,7 +218,8 @@ public class RssItemRepository {
      * If the item already exists, it does nothing
      *
      * @param item The item to create
-     * @return The number of rows affected or -1 if an error occurs
+     * @return The number of rows affected
+     * @see #insertItems(Collection)
      */
     public long insertItem(RssItem item) {
         //Check that the item is not null
@@ -109,142 +229,483 @@ public class RssItemRepository {
             throw new IllegalArgumentException(msg);
         }
 
-        //default return value
-        long result = 0L;
-
-        if (!existsByTitle(item.getTitle())) { //first check if the item already exists
-            //first open database with write permissions
-            open(true);
-
-            //fill all columns
-            ContentValues initialValues = new ContentValues();
-
-            initialValues.put(COLUMN_TITLE, item.getTitle());
-            initialValues.put(COLUMN_LINK, item.getLink());
-            initialValues.put(COLUMN_AUTHOR, item.getAuthor());
-            initialValues.put(COLUMN_DESCRIPTION, item.getDescription());
-            initialValues.put(COLUMN_PUB_DATE, item.getPubDate());
-            initialValues.put(COLUMN_CATEGORIES, item.getCategories());
-            initialValues.put(COLUMN_THUMBNAIL, item.getThumbnail());
-            initialValues.put(COLUMN_IMAGE_CACHE_PATH, item.getImagePathInCache());
-
-            //create the item
-            result = mDatabase.insert(TABLE_ITEMS, null, initialValues);
+        return insertItems(Collections.singletonList(item)).size();
+    }
 
-            //database access is not needed anymore
-            close();
+    /**
+     * Creates a collection of new {@link RssItem}s in the database, all at once.
+     * <p>
+     * The items which already exist are skipped, and so are the ones with neither link nor title, which
+     * can't be identified. Everything happens in a single transaction, with a
+     * single compiled statement, so the database is synced just once however many items there are.
+     *
+     * @param items The items to create
+     * @return The items which were actually new, in the same order
+     */
+    public List<RssItem> insertItems(Collection<RssItem> items) {
+        List<RssItem> inserted = new ArrayList<>();
+
+        //first get write access to the database
+        open(true);
+
+        mDatabase.beginTransaction();
+        SQLiteStatement statement = mDatabase.compileStatement(INSERT_ITEM);
+        try {
+            for (RssItem item : items) {
+                String key = getItemKey(item.getLink(), item.getTitle());
+                if (key == null) {
+                    Log.w(TAG, "Skipping an item with neither link nor title");
+                    continue;
+                }
+
+                statement.clearBindings();
+                statement.bindString(1, key);
+                bind(statement, 2, item.getTitle());
+                bind(statement, 3, item.getLink());
+                bind(statement, 4, item.getAuthor());
+                bind(statement, 5, item.getDescription());
+                bind(statement, 6, item.getPubDate());
+                bind(statement, 7, item.getCategories());
+                bind(statement, 8, item.getThumbnail());
+
+                //the row id is -1 if the item has been skipped
+                long id = statement.executeInsert();
+                if (id != -1) {
+                    item.setId(id);
+                    inserted.add(item);
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            mDatabase.endTransaction();
         }
 
-        return result;
+        return inserted;
     }
 
     /**
-     * Checks if a {@link RssItem} already exists, searching by its {@link RssItem#title}
+     * Retrieves the {@link RssItem#link}s of the most recently stored items, the newest first.
+     * <p>
+     * This is handy for building the "last seen" mark of the feed, so only the new items of a feed
+     * are parsed.
      *
-     * @param title The {@link RssItem#title}
-     * @return {@code true} if the item exists in the database. {@code false} otherwise.
+     * @param limit The maximum number of links to retrieve
+     * @return A collection with the links of the most recently stored items
      */
-    public boolean existsByTitle(String title) {
-        //first open database with only read access
+    public List<String> getRecentLinks(int limit) {
+        List<String> links = new ArrayList<>();
+
+        //get read access to the database
         open(false);
 
+        //the greater the id, the more recently the item was stored
         Cursor cursor = mDatabase.query(
                 TABLE_ITEMS,
-                new String[]{COLUMN_ID},
-                COLUMN_TITLE + " = ?",
-                new String[]{title},
+                new String[]{COLUMN_LINK},
+                null,
                 null,
                 null,
-                null
+                null,
+                COLUMN_ID + " DESC",
+                String.valueOf(limit)
         );
 
-        //if there is a single coincidence, it means that the item already exists
-        boolean exists = cursor.moveToFirst();
+        while (cursor.moveToNext()) {
+            links.add(cursor.getString(0));
+        }
 
-        //close cursor so it's not needed anymore, and so the connection to the database
+        //close cursor so it's not needed anymore
         cursor.close();
-        close();
 
-        return exists;
+        return links;
     }
 
     /**
      * This method retrieve all elements from the database, with an optional keyword.
      * <p>
-     * If the keyword is informed, it searches any coincidence in the {@link RssItem#title} with the
-     * given keyword passed as parameter, not only exact matches.
+     * It reads every matching item at once, so it's only meant for small results: use
+     * {@link #getItems(String, int)} for showing them. The items only have their id, title and
+     * thumbnail, as in the list.
      *
      * @param keyword The keyword to look up after
      * @return A collection of {@link RssItem}s, matching criteria if any, or all items if there's no keyword
+     * @see #getItems(String, int)
      */
     public List<RssItem> getAllItems(String keyword) {
         List<RssItem> items = new ArrayList<>();
+        RssItemPager pager = getItems(keyword, RssItemPager.MAX_PAGE_SIZE);
+        while (pager.hasMore()) {
+            items.addAll(pager.nextPage());
+        }
+        return items;
+    }
 
+    /**
+     * Gets the items page by page, with an optional keyword, so only the pages which are actually
+     * shown are read.
+     * <p>
+     * If the keyword is informed, it searches the items through the full-text index: every word of
+     * the keyword has to be in the title, the description or the categories of an item, either whole
+     * or as the beginning of a longer word. The matching items are ordered by relevance, so the ones
+     * with the words in the title go first. Otherwise, the items come in the order they were stored.
+     * <p>
+     * The items only have what the list shows: their id, title and thumbnail. The whole item is read
+     * with {@link #getItemById(long)} when it's opened.
+     *
+     * @param keyword  The keyword to look up after
+     * @param pageSize The number of items of every page
+     * @return The pager of the {@link RssItem}s, matching criteria if any, or all items if there's no keyword
+     */
+    public RssItemPager getItems(String keyword, int pageSize) {
         //if the search pattern is an empty string, show all items
-        String selection = null;
-        String[] selectionArgs = null;
+        String query = keyword != null ? FullTextSearch.toMatchQuery(keyword) : null;
+        return new RssItemPager(this, query, pageSize);
+    }
+
+    /**
+     * Gets a page of items, in the order they were stored, after a given one.
+     * <p>
+     * The page starts right at the given id, through the primary key, so the previous pages are never
+     * read again however deep the page is. The publication date can't be the key: it's free text.
+     *
+     * @param afterId The id of the last item of the previous page, or 0 for the first page
+     * @param limit   The maximum number of items
+     * @return The items, fewer than the limit only if it's the last page
+     */
+    List<RssItem> getItemsAfter(long afterId, int limit) {
+        //get read access to the database
+        open(false);
+
+        return readListRows(mDatabase.query(TABLE_ITEMS, LIST_COLUMNS, COLUMN_ID + " > ?",
+                new String[]{String.valueOf(afterId)}, null, null, COLUMN_ID, String.valueOf(limit)));
+    }
 
-        if (keyword != null && !keyword.isEmpty()) { //if there's a keyword, let's make a where filter
-            //search items with the matching pattern
-            selection = COLUMN_TITLE + " LIKE ?";
-            selectionArgs = new String[]{"%" + keyword + "%"};
+    /**
+     * Searches the ids of the items matching a full-text query, ordered by relevance
+     *
+     * @param query The full-text query
+     * @return The ids of the matching items, the most relevant first
+     */
+    long[] searchItemIds(String query) {
+        List<RankedId> ranked = new ArrayList<>();
+
+        //get read access to the database
+        open(false);
+
+        Cursor cursor = mDatabase.rawQuery(SEARCH_ITEMS, new String[]{query});
+        try {
+            while (cursor.moveToNext()) {
+                double score = FullTextSearch.score(cursor.getBlob(1), SEARCH_WEIGHTS);
+                ranked.add(new RankedId(cursor.getLong(0), score));
+            }
+        } finally {
+            cursor.close();
         }
 
-        //open read access to the database
+        //the index gives the ids in order, and the sort is stable, so equally relevant items go in the
+        //order they were stored
+        Collections.sort(ranked, new Comparator<RankedId>() {
+            @Override
+            public int compare(RankedId first, RankedId second) {
+                return Double.compare(second.mScore, first.mScore);
+            }
+        });
+
+        long[] ids = new long[ranked.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ranked.get(i).mId;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the items with the given ids
+     *
+     * @param ids  The ids
+     * @param from The index of the first id
+     * @param to   The index after the last id
+     * @return The items, in the order of their ids. The ids of missing items are skipped
+     */
+    List<RssItem> getItemsById(long[] ids, int from, int to) {
+        String[] selectionArgs = new String[to - from];
+        StringBuilder selection = new StringBuilder(COLUMN_ID).append(" IN (");
+        for (int i = from; i < to; i++) {
+            selection.append(i > from ? ", ?" : "?");
+            selectionArgs[i - from] = String.valueOf(ids[i]);
+        }
+        selection.append(')');
+
+        //get read access to the database
         open(false);
 
-        //perform query to the database
-        Cursor cursor = mDatabase.query(TABLE_ITEMS, null, selection, selectionArgs, null, null, null);
-
-        if (cursor.moveToFirst()) { //check if it have any result first
-            do {
-                RssItem item = new RssItem(
-                        cursor.getString(cursor.getColumnIndex(COLUMN_TITLE)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_LINK)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_AUTHOR)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_DESCRIPTION)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_PUB_DATE)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_CATEGORIES)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_THUMBNAIL)),
-                        cursor.getString(cursor.getColumnIndex(COLUMN_IMAGE_CACHE_PATH))
-                );
+        List<RssItem> rows = readListRows(mDatabase.query(TABLE_ITEMS, LIST_COLUMNS, selection.toString(),
+                selectionArgs, null, null, null));
+
+        //the rows come in any order
+        Map<Long, RssItem> byId = new HashMap<>();
+        for (RssItem item : rows) {
+            byId.put(item.getId(), item);
+        }
+        List<RssItem> items = new ArrayList<>(rows.size());
+        for (int i = from; i < to; i++) {
+            RssItem item = byId.get(ids[i]);
+            if (item != null) {
                 items.add(item);
-            } while (cursor.moveToNext()); //continue adding while there are more items in the cursor
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Gets the whole item with the given id
+     *
+     * @param id The id of the item
+     * @return The item, or {@code null} if there's no item with that id
+     */
+    public RssItem getItemById(long id) {
+        //get read access to the database
+        open(false);
 
-            //close the cursor, it's not needed anymore
+        Cursor cursor = mDatabase.query(TABLE_ITEMS, null, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(id)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? readItem(cursor) : null;
+        } finally {
             cursor.close();
         }
-        close();
+    }
 
+    /**
+     * Reads the rows of the list of items of a cursor, and closes it.
+     * <p>
+     * The cursor has the {@link #LIST_COLUMNS}, so the items only have their id, title and thumbnail.
+     *
+     * @param cursor The cursor
+     * @return The items
+     */
+    private List<RssItem> readListRows(Cursor cursor) {
+        List<RssItem> items = new ArrayList<>();
+        try {
+            //the columns are the same for every row
+            int idColumn = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            int titleColumn = cursor.getColumnIndexOrThrow(COLUMN_TITLE);
+            int thumbnailColumn = cursor.getColumnIndexOrThrow(COLUMN_THUMBNAIL);
+
+            while (cursor.moveToNext()) {
+                String thumbnail = cursor.getString(thumbnailColumn);
+                RssItem item = new RssItem(cursor.getString(titleColumn), null, null, null, null, null,
+                        thumbnail, thumbnail != null ? mImagePaths.resolve(thumbnail) : null);
+                item.setId(cursor.getLong(idColumn));
+                items.add(item);
+            }
+        } finally {
+            //close the cursor, it's not needed anymore, even if it's empty, the connection stays open
+            cursor.close();
+        }
         return items;
     }
 
     /**
-     * Helper inner class for encapsulating low level access to the database
+     * Reads the item at the current position of a cursor
+     *
+     * @param cursor The cursor
+     * @return The item
+     */
+    private RssItem readItem(Cursor cursor) {
+        String thumbnail = cursor.getString(cursor.getColumnIndex(COLUMN_THUMBNAIL));
+        RssItem item = new RssItem(
+                cursor.getString(cursor.getColumnIndex(COLUMN_TITLE)),
+                cursor.getString(cursor.getColumnIndex(COLUMN_LINK)),
+                mStringPool.intern(cursor.getString(cursor.getColumnIndex(COLUMN_AUTHOR))),
+                cursor.getString(cursor.getColumnIndex(COLUMN_DESCRIPTION)),
+                cursor.getString(cursor.getColumnIndex(COLUMN_PUB_DATE)),
+                mStringPool.intern(cursor.getString(cursor.getColumnIndex(COLUMN_CATEGORIES))),
+                thumbnail,
+                thumbnail != null ? mImagePaths.resolve(thumbnail) : null
+        );
+        item.setId(cursor.getLong(cursor.getColumnIndex(COLUMN_ID)));
+        return item;
+    }
+
+    /**
+     * Creates the schema of the current version in an empty database
+     *
+     * @param db The database
+     * @throws SQLException If the schema can't be created
+     */
+    static void createSchema(SQLiteDatabase db) throws SQLException {
+        db.execSQL(CREATE_TABLE_ITEMS);
+        createSearchIndex(db);
+    }
+
+    /**
+     * Creates the full-text table and the triggers which keep it in sync with the items table
+     *
+     * @param db The database
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        try {
+            db.execSQL(CREATE_TABLE_ITEMS_FTS + FTS_TOKENIZER + ")");
+        } catch (SQLException e) {
+            //this sqlite has no unicode tokenizer, fall back to the default one
+            Log.w(TAG, "Error creating the full-text table with the unicode tokenizer", e);
+            db.execSQL(CREATE_TABLE_ITEMS_FTS + ")");
+        }
+        for (String trigger : CREATE_FTS_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Computes the key which identifies an item: the hash of its link, or of its title if it has no
+     * link
+     *
+     * @param link  The link of the item
+     * @param title The title of the item
+     * @return The key of the item, or {@code null} if it has neither link nor title
+     */
+    private static String getItemKey(String link, String title) {
+        if (link != null) {
+            return HashUtils.sha1Hex(link);
+        }
+        return title != null ? HashUtils.sha1Hex(title) : null;
+    }
+
+    /**
+     * Binds a value to a parameter of a statement, which can be {@code null}
+     *
+     * @param statement The statement
+     * @param index     The index of the parameter, starting at 1
+     * @param value     The value
+     */
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * The id of an item matching a search, with its relevance
+     */
+    private static class RankedId {
+
+        private final long mId;
+        private final double mScore;
+
+        RankedId(long id, double score) {
+            this.mId = id;
+            this.mScore = score;
+        }
+    }
+
+    /**
+     * Helper inner class for encapsulating low level access to the database.
+     * <p>
+     * There's a single helper for every database, which keeps its connection open.
      */
     private static class DBHelp extends SQLiteOpenHelper {
 
+        //the helpers of every database, by name
+        private static final Map<String, DBHelp> sInstances = new HashMap<>();
+
+        static synchronized DBHelp getInstance(Context con, String name) {
+            DBHelp help = sInstances.get(name);
+            if (help == null) {
+                //never hold an activity for the whole life of the process
+                help = new DBHelp(con.getApplicationContext(), name);
+                sInstances.put(name, help);
+            }
+            return help;
+        }
+
         //Constructor
-        DBHelp(Context con) {
-            super(con, DB_NAME, null, VERSION);
+        private DBHelp(Context con, String name) {
+            super(con, name, null, VERSION);
+            //readers don't wait for writers, and writers don't wait for readers
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            //a bigger page cache, and with write-ahead logging, syncing only on checkpoints is still safe
+            db.execSQL("PRAGMA cache_size = " + CACHE_SIZE);
+            db.execSQL("PRAGMA synchronous = NORMAL");
         }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
             try {
-                db.execSQL(CREATE_TABLE_ITEMS);
+                createSchema(db);
             } catch (SQLException e) {
                 Log.w(TAG, "Error executing statement " + CREATE_TABLE_ITEMS, e);
             }
         }
 
+        /**
+         * Migrates the database step by step, keeping all the data. It runs in a transaction, so if
+         * anything goes wrong, the database stays as it was.
+         */
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            Log.w(TAG, "Updating database from " + oldVersion + " to " + newVersion +
-                    ". This process wil erase all data");
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ITEMS);
+            Log.i(TAG, "Updating database from " + oldVersion + " to " + newVersion);
+
+            if (oldVersion < 2) {
+                migrateToVersion2(db);
+            }
+            if (oldVersion < 3) {
+                migrateToVersion3(db);
+            }
+        }
+
+        /**
+         * Moves the items of the version 1 of the schema, with a unique constraint on every column,
+         * to the version 2, where the items are identified by their key
+         *
+         * @param db The database
+         */
+        private void migrateToVersion2(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + TABLE_ITEMS + " RENAME TO " + TABLE_ITEMS_V1);
+            db.execSQL(CREATE_TABLE_ITEMS);
+
+            Cursor cursor = db.query(TABLE_ITEMS_V1, new String[]{COLUMN_ID, COLUMN_TITLE, COLUMN_LINK,
+                            COLUMN_AUTHOR, COLUMN_DESCRIPTION, COLUMN_PUB_DATE, COLUMN_CATEGORIES, COLUMN_THUMBNAIL},
+                    null, null, null, null, COLUMN_ID);
+            SQLiteStatement statement = db.compileStatement(MIGRATE_ITEM);
+            try {
+                while (cursor.moveToNext()) {
+                    //the key is a hash, which sqlite can't compute
+                    String key = getItemKey(cursor.getString(2), cursor.getString(1));
+                    if (key == null) {
+                        continue;
+                    }
+
+                    statement.clearBindings();
+                    statement.bindLong(1, cursor.getLong(0));
+                    statement.bindString(2, key);
+                    for (int column = 1; column < cursor.getColumnCount(); column++) {
+                        bind(statement, column + 2, cursor.getString(column));
+                    }
+                    statement.executeInsert();
+                }
+            } finally {
+                statement.close();
+                cursor.close();
+            }
+
+            db.execSQL("DROP TABLE " + TABLE_ITEMS_V1);
+        }
 
-            onCreate(db);
+        /**
+         * Adds the full-text index of the version 3 of the schema, and indexes the existing items
+         *
+         * @param db The database
+         */
+        private void migrateToVersion3(SQLiteDatabase db) {
+            createSearchIndex(db);
+            db.execSQL("INSERT INTO " + TABLE_ITEMS_FTS + "(" + TABLE_ITEMS_FTS + ") VALUES ('rebuild')");
         }
     }
 }
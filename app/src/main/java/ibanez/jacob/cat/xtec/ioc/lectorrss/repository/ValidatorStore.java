@@ -0,0 +1,35 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+/**
+ * Keeps the http validators ({@code ETag} and {@code Last-Modified}) of the last response of every
+ * feed, so the next request for a feed can be a conditional one.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public interface ValidatorStore {
+
+    /**
+     * @param feedUrl The url of the feed
+     * @return The {@code ETag} of the last response of the feed, or {@code null} if there's none
+     */
+    String getEtag(String feedUrl);
+
+    /**
+     * @param feedUrl The url of the feed
+     * @return The {@code Last-Modified} of the last response of the feed, or {@code null} if
+     * there's none
+     */
+    String getLastModified(String feedUrl);
+
+    /**
+     * Saves the validators of the last response of a feed.
+     * <p>
+     * This has to be called only once the content of the response has been stored, otherwise the
+     * next conditional request would skip content which has never been stored.
+     *
+     * @param feedUrl      The url of the feed
+     * @param etag         The {@code ETag} of the response, if any
+     * @param lastModified The {@code Last-Modified} of the response, if any
+     */
+    void saveValidators(String feedUrl, String etag, String lastModified);
+}
@@ -0,0 +1,538 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ThumbnailDownloader;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.FeedWatermark;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ItemSink;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.RssItemParser;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.ItemStore;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.ValidatorStore;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.ConnectionUtils;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.FeedResponse;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.WorkerThreadFactory;
+
+/**
+ * Syncs a feed with an {@link ItemStore} in stages which run at the same time, so a refresh
+ * takes as long as its slowest stage, not as long as all of them together.
+ * <p>
+ * The stages are connected by bounded queues, so a slow stage holds back the ones before it instead
+ * of piling up items in memory:
+ * <ol>
+ * <li>The parser downloads the feed and hands every new item to the writer while the xml is still
+ * arriving.</li>
+ * <li>The writer stores the items in batches, each in a transaction of its own, and hands the ones
+ * which were actually new to the image workers. The batches go through the store, i.e. through the
+ * single writer of the repository, so they never compete with other writes.</li>
+ * <li>The image workers download the thumbnails of the new items.</li>
+ * </ol>
+ * The {@link Listener} is told about the progress of every stage, through the callback executor
+ * (i.e. the main thread), so it can show the new items as soon as every batch is stored. The
+ * thumbnails of the new items are owned by the sync (see {@link Sync#ownsThumbnail(RssItem)}). A
+ * sync can be cancelled at any time.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class SyncEngine {
+
+    //Capacity of the queues between the stages
+    static final int QUEUE_CAPACITY = 32;
+
+    //Maximum number of items stored in a single transaction
+    static final int BATCH_SIZE = 16;
+
+    //Number of thumbnails downloaded at the same time
+    static final int IMAGE_WORKERS = 2;
+
+    //Number of stored links which make up the "last seen" mark of the feed
+    static final int WATERMARK_SIZE = 200;
+
+    //Marks the end of the items in a queue
+    private static final RssItem END = new RssItem(null, null, null, null, null, null, null, null);
+
+    private final ItemStore mItems;
+    private final ValidatorStore mValidators;
+    private final RssItemParser mParser;
+    private final ThumbnailDownloader mDownloader;
+    private final Executor mCallbackExecutor;
+    private final ExecutorService mStages;
+    private final ThreadFactory mAborters = new WorkerThreadFactory("sync-abort");
+
+    /**
+     * Creates an engine
+     *
+     * @param items            The store of the items, i.e. the repository
+     * @param validators       The store of the validators of the feeds, i.e. the repository
+     * @param parser           The parser of the feeds
+     * @param downloader       The downloader of the thumbnails
+     * @param callbackExecutor The executor which runs the callbacks, such as the main thread
+     */
+    public SyncEngine(ItemStore items, ValidatorStore validators, RssItemParser parser,
+                      ThumbnailDownloader downloader, Executor callbackExecutor) {
+        this.mItems = items;
+        this.mValidators = validators;
+        this.mParser = parser;
+        this.mDownloader = downloader;
+        this.mCallbackExecutor = callbackExecutor;
+        this.mStages = Executors.newCachedThreadPool(new WorkerThreadFactory("sync"));
+    }
+
+    /**
+     * Starts syncing a feed in the background
+     *
+     * @param url      The url of the feed
+     * @param listener The listener of the sync
+     * @return The sync, which can be cancelled
+     */
+    public Sync start(String url, Listener listener) {
+        Sync sync = new Sync(url, listener);
+        sync.start();
+        return sync;
+    }
+
+    /**
+     * Stops every running sync, which fails unless it has been cancelled
+     */
+    public void shutdown() {
+        mStages.shutdownNow();
+    }
+
+    /**
+     * Waits for every stage to end after a {@link #shutdown()}, i.e. for testing
+     *
+     * @param timeout The maximum time to wait
+     * @param unit    The unit of the timeout
+     * @return {@code true} if every stage has ended
+     * @throws InterruptedException If interrupted while waiting
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return mStages.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * A single stage of a sync
+     */
+    private interface Stage {
+
+        /**
+         * Runs the stage until its input is over
+         *
+         * @throws Exception If the stage fails, which fails the whole sync
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * A running sync of a feed
+     */
+    public final class Sync {
+
+        private final String mUrl;
+        private final Listener mListener;
+
+        //the items going from the parser to the writer, and from the writer to the image workers
+        private final BlockingQueue<RssItem> mToStore = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final BlockingQueue<RssItem> mToFetch = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        //the threads of the running stages, guarded by itself, and whether they have been stopped
+        private final List<Thread> mRunning = new ArrayList<>();
+        private boolean mStopped;
+        private final AtomicInteger mRunningCount = new AtomicInteger();
+
+        //the response of the feed, which is only set while holding the threads above, so a stop can
+        //always abort it
+        private volatile FeedResponse mResponse;
+
+        //the thumbnails of the stored items, which only this sync downloads
+        private final Set<String> mOwnedThumbnails =
+                Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        //the progress of every stage
+        private final AtomicInteger mParsedItems = new AtomicInteger();
+        private final AtomicInteger mStoredItems = new AtomicInteger();
+        private final AtomicInteger mCachedThumbnails = new AtomicInteger();
+        private final AtomicInteger mFailedThumbnails = new AtomicInteger();
+        private volatile long mTransferredBytes;
+        private volatile long mDecodedBytes;
+
+        private final AtomicReference<Exception> mError = new AtomicReference<>();
+        private volatile boolean mCancelled;
+
+        private Sync(String url, Listener listener) {
+            this.mUrl = url;
+            this.mListener = listener;
+        }
+
+        /**
+         * Cancels the sync, so its listener is never called again. The items already stored are kept,
+         * but the validators of the feed are not saved, so the next sync downloads it again. It must
+         * be called from the main thread.
+         */
+        public void cancel() {
+            mCancelled = true;
+            stopStages();
+        }
+
+        /**
+         * Tells if the thumbnail of an item is downloaded by this sync, as the item is one of the new
+         * ones, so nobody else has to download it. It can be called from any thread.
+         *
+         * @param item The item
+         * @return {@code true} if the item has been stored by this sync, and has a thumbnail
+         */
+        public boolean ownsThumbnail(RssItem item) {
+            return item.getThumbnail() != null && mOwnedThumbnails.contains(item.getThumbnail());
+        }
+
+        /**
+         * @return The progress of the sync right now
+         */
+        public SyncProgress getProgress() {
+            FeedResponse response = mResponse;
+            return new SyncProgress(response != null && response.isNotModified(), mParsedItems.get(),
+                    mStoredItems.get(), mCachedThumbnails.get(), mFailedThumbnails.get(),
+                    mTransferredBytes, mDecodedBytes);
+        }
+
+        /**
+         * Starts every stage at once
+         */
+        private void start() {
+            List<Stage> stages = new ArrayList<>();
+            stages.add(new Stage() {
+                @Override
+                public void run() throws Exception {
+                    parse();
+                }
+            });
+            stages.add(new Stage() {
+                @Override
+                public void run() throws Exception {
+                    store();
+                }
+            });
+            for (int i = 0; i < IMAGE_WORKERS; i++) {
+                stages.add(new Stage() {
+                    @Override
+                    public void run() throws Exception {
+                        fetchThumbnails();
+                    }
+                });
+            }
+
+            mRunningCount.set(stages.size());
+            for (Stage stage : stages) {
+                mStages.execute(wrap(stage));
+            }
+        }
+
+        /**
+         * The first stage: downloads the feed and hands every new item to the writer as soon as it's
+         * parsed. The parser waits while the writer is behind.
+         */
+        private void parse() throws Exception {
+            //send the validators of the last response, so an unchanged feed is not downloaded again
+            FeedResponse response = ConnectionUtils.openHttpConnection(mUrl, mValidators.getEtag(mUrl),
+                    mValidators.getLastModified(mUrl));
+            synchronized (mRunning) {
+                mResponse = response;
+                //the sync may have been stopped while connecting
+                if (mStopped) {
+                    response.abort();
+                }
+            }
+
+            if (!response.isNotModified()) {
+                //the body holds a slot of the http client until it's closed, whatever happens
+                InputStream in = response.getBody();
+                try {
+                    //get the "last seen" mark of the feed from the store
+                    FeedWatermark watermark = new FeedWatermark(mItems.getRecentLinks(WATERMARK_SIZE));
+
+                    mParser.parse(in, new ItemSink() {
+                        @Override
+                        public boolean onItem(RssItem item) {
+                            try {
+                                mToStore.put(item);
+                            } catch (InterruptedException ex) {
+                                //the sync has been stopped, so stop reading the feed
+                                Thread.currentThread().interrupt();
+                                return false;
+                            }
+                            mParsedItems.incrementAndGet();
+                            return true;
+                        }
+                    }, watermark);
+                } finally {
+                    in.close();
+                }
+
+                //the body may have been transferred compressed
+                mTransferredBytes = response.getTransferredBytes();
+                mDecodedBytes = response.getDecodedBytes();
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            mToStore.put(END);
+        }
+
+        /**
+         * The second stage: stores the items in batches, as they come, and hands the new ones to the
+         * image workers. Once every item is stored, the validators of the feed are saved.
+         */
+        private void store() throws Exception {
+            List<RssItem> batch = new ArrayList<>(BATCH_SIZE);
+            boolean end = false;
+
+            while (!end) {
+                //wait for an item, and take the ones which are already there along with it
+                batch.clear();
+                batch.add(mToStore.take());
+                mToStore.drainTo(batch, BATCH_SIZE - 1);
+
+                //the end is always the last item
+                if (batch.get(batch.size() - 1) == END) {
+                    batch.remove(batch.size() - 1);
+                    end = true;
+                }
+
+                if (!batch.isEmpty()) {
+                    List<RssItem> stored = mItems.storeItems(batch);
+                    //before anyone is told about the new items, so their thumbnails are never
+                    //scheduled twice
+                    for (RssItem item : stored) {
+                        if (item.getThumbnail() != null) {
+                            mOwnedThumbnails.add(item.getThumbnail());
+                        }
+                    }
+                    mStoredItems.addAndGet(stored.size());
+                    deliverProgress();
+                    for (RssItem item : stored) {
+                        mToFetch.put(item);
+                    }
+                }
+            }
+
+            //the items are stored, so the next sync can be a conditional one
+            FeedResponse response = mResponse;
+            if (!response.isNotModified()) {
+                mValidators.saveValidators(mUrl, response.getEtag(), response.getLastModified());
+            }
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onItemsStored(getProgress());
+                }
+            });
+
+            for (int i = 0; i < IMAGE_WORKERS; i++) {
+                mToFetch.put(END);
+            }
+        }
+
+        /**
+         * The last stage: downloads the thumbnails of the new items. A thumbnail which can't be
+         * downloaded doesn't fail the sync.
+         */
+        private void fetchThumbnails() throws Exception {
+            RssItem item;
+            while ((item = mToFetch.take()) != END) {
+                try {
+                    if (mDownloader.downloadNow(item)) {
+                        mCachedThumbnails.incrementAndGet();
+                        deliverThumbnail(item, null);
+                    }
+                } catch (IOException ex) {
+                    mFailedThumbnails.incrementAndGet();
+                    deliverThumbnail(item, ex);
+                }
+            }
+        }
+
+        /**
+         * Runs a stage, unless the sync has already been stopped, and finishes the sync once it's the
+         * last one
+         */
+        private Runnable wrap(final Stage stage) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    try {
+                        synchronized (mRunning) {
+                            if (mStopped) {
+                                return;
+                            }
+                            mRunning.add(thread);
+                        }
+                        stage.run();
+                    } catch (InterruptedException ex) {
+                        //unless the sync has been stopped, the engine is shutting down
+                        synchronized (mRunning) {
+                            if (!mStopped) {
+                                fail(ex);
+                            }
+                        }
+                    } catch (Exception ex) {
+                        fail(ex);
+                    } finally {
+                        synchronized (mRunning) {
+                            mRunning.remove(thread);
+                        }
+                        //the thread is reused by other syncs, so forget about any interruption
+                        Thread.interrupted();
+
+                        if (mRunningCount.decrementAndGet() == 0) {
+                            finish();
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * Fails the sync, which stops every stage
+         */
+        private void fail(Exception error) {
+            if (mError.compareAndSet(null, error)) {
+                stopStages();
+            }
+        }
+
+        /**
+         * Interrupts every stage which is waiting for its input, or for room in its output, aborts the
+         * download of the feed, and keeps the stages which are not running yet from running at all
+         */
+        private void stopStages() {
+            synchronized (mRunning) {
+                mStopped = true;
+                for (Thread thread : mRunning) {
+                    thread.interrupt();
+                }
+
+                //a read from the network ignores interruptions, so the parser would keep downloading
+                //the feed, and holding its slot of the http client, until the end or a timeout
+                final FeedResponse response = mResponse;
+                if (response != null) {
+                    //disconnecting may touch the network, which the main thread must never do
+                    mAborters.newThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            response.abort();
+                        }
+                    }).start();
+                }
+            }
+        }
+
+        /**
+         * Tells the listener about the end of the sync
+         */
+        private void finish() {
+            final Exception error = mError.get();
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    if (error != null) {
+                        mListener.onSyncFailed(getProgress(), error);
+                    } else {
+                        mListener.onSyncFinished(getProgress());
+                    }
+                }
+            });
+        }
+
+        private void deliverProgress() {
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onSyncProgress(getProgress());
+                }
+            });
+        }
+
+        private void deliverThumbnail(final RssItem item, final IOException error) {
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    if (error == null) {
+                        mListener.onThumbnailCached(item);
+                    } else {
+                        mListener.onThumbnailFailed(item, error);
+                    }
+                    mListener.onSyncProgress(getProgress());
+                }
+            });
+        }
+
+        /**
+         * Runs a callback through the callback executor, unless the sync has been cancelled
+         */
+        private void deliver(final Runnable callback) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    //cancelling happens on the main thread too, so this check is enough
+                    if (!mCancelled) {
+                        callback.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Listener of the progress of a sync. Every method is called through the callback executor.
+     * <p>
+     * The thumbnails of the new items are reported as a {@link ThumbnailDownloader.Callback}.
+     */
+    public interface Listener extends ThumbnailDownloader.Callback {
+
+        /**
+         * Some stage of the sync has made progress, i.e. a batch of new items has been stored
+         *
+         * @param progress The progress of every stage
+         */
+        void onSyncProgress(SyncProgress progress);
+
+        /**
+         * Every new item of the feed has been stored, the thumbnails may still be downloading
+         *
+         * @param progress The progress of every stage
+         */
+        void onItemsStored(SyncProgress progress);
+
+        /**
+         * Every stage has completed
+         *
+         * @param progress The progress of every stage
+         */
+        void onSyncFinished(SyncProgress progress);
+
+        /**
+         * The sync has failed, and every stage has stopped. The items stored so far are kept.
+         *
+         * @param progress The progress of every stage
+         * @param error    The error
+         */
+        void onSyncFailed(SyncProgress progress, Exception error);
+    }
+}
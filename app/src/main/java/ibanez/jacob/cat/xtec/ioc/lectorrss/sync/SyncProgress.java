@@ -0,0 +1,90 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.sync;
+
+/**
+ * A snapshot of the progress of every stage of a sync of a feed
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class SyncProgress {
+
+    private final boolean mNotModified;
+    private final int mParsedItems;
+    private final int mStoredItems;
+    private final int mCachedThumbnails;
+    private final int mFailedThumbnails;
+    private final long mTransferredBytes;
+    private final long mDecodedBytes;
+
+    SyncProgress(boolean notModified, int parsedItems, int storedItems, int cachedThumbnails,
+                 int failedThumbnails, long transferredBytes, long decodedBytes) {
+        this.mNotModified = notModified;
+        this.mParsedItems = parsedItems;
+        this.mStoredItems = storedItems;
+        this.mCachedThumbnails = cachedThumbnails;
+        this.mFailedThumbnails = failedThumbnails;
+        this.mTransferredBytes = transferredBytes;
+        this.mDecodedBytes = decodedBytes;
+    }
+
+    /**
+     * @return {@code true} if the feed has not changed since the last sync, so there's nothing to parse
+     */
+    public boolean isNotModified() {
+        return mNotModified;
+    }
+
+    /**
+     * @return The number of new items parsed from the feed so far
+     */
+    public int getParsedItems() {
+        return mParsedItems;
+    }
+
+    /**
+     * @return The number of items stored in the repository so far, which were not there yet
+     */
+    public int getStoredItems() {
+        return mStoredItems;
+    }
+
+    /**
+     * @return The number of thumbnails of the stored items cached so far
+     */
+    public int getCachedThumbnails() {
+        return mCachedThumbnails;
+    }
+
+    /**
+     * @return The number of thumbnails of the stored items which could not be downloaded
+     */
+    public int getFailedThumbnails() {
+        return mFailedThumbnails;
+    }
+
+    /**
+     * @return The number of bytes of the feed as they were transferred, once it has been parsed
+     */
+    public long getTransferredBytes() {
+        return mTransferredBytes;
+    }
+
+    /**
+     * @return The number of bytes of the feed once decompressed, once it has been parsed
+     */
+    public long getDecodedBytes() {
+        return mDecodedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncProgress{" +
+                "notModified=" + mNotModified +
+                ", parsedItems=" + mParsedItems +
+                ", storedItems=" + mStoredItems +
+                ", cachedThumbnails=" + mCachedThumbnails +
+                ", failedThumbnails=" + mFailedThumbnails +
+                ", transferredBytes=" + mTransferredBytes +
+                ", decodedBytes=" + mDecodedBytes +
+                '}';
+    }
+}
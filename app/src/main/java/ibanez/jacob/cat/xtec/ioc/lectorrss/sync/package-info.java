@@ -0,0 +1,6 @@
+/**
+ * Package containing the engine which syncs the feeds with the repository
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+package ibanez.jacob.cat.xtec.ioc.lectorrss.sync;
\ No newline at end of file
@@ -7,11 +7,19 @@ import android.net.Network;
 import android.net.NetworkInfo;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.ProtocolException;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.HttpClient;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.HttpDispatcher;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.net.Priority;
 
 import static android.net.ConnectivityManager.TYPE_MOBILE;
 import static android.net.ConnectivityManager.TYPE_WIFI;
@@ -25,6 +33,22 @@ public class ConnectionUtils {
 
     private static final String TAG = ConnectionUtils.class.getSimpleName();
 
+    //Http headers for conditional requests
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+    //Supported content encodings
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_X_GZIP = "x-gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ACCEPTED_ENCODINGS = ENCODING_GZIP + ", " + ENCODING_DEFLATE;
+
+    //Size of the buffers of the decompressing streams
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     /**
      * This method checks for {@link ConnectivityManager#TYPE_MOBILE} and
      * {@link ConnectivityManager#TYPE_WIFI} connectivity and tells if there's one of both connected
@@ -66,18 +90,49 @@ public class ConnectionUtils {
      * @throws IOException If an error occurs
      */
     public static InputStream openHttpConnection(String urlAddress) throws IOException {
-        InputStream in;
+        //without validators the response is never "not modified", so it always has a body
+        return openHttpConnection(urlAddress, null, null).getBody();
+    }
+
+    /**
+     * Opens a conditional HTTP connection to the given url address.
+     * <p>
+     * The validators of the previous response are sent as {@code If-None-Match} and
+     * {@code If-Modified-Since} headers, so if the content has not changed, the server answers
+     * with a 304 and no body at all.
+     * <p>
+     * Compressed bodies (gzip or deflate) are negotiated and decompressed on the fly as they are
+     * read, so they are never buffered in memory.
+     *
+     * @param urlAddress   The string representing a url address
+     * @param etag         The {@code ETag} of the previous response, or {@code null}
+     * @param lastModified The {@code Last-Modified} of the previous response, or {@code null}
+     * @return The response, with no body if the content has not changed
+     * @throws IOException If an error occurs
+     */
+    public static FeedResponse openHttpConnection(String urlAddress, String etag, String lastModified)
+            throws IOException {
+        FeedResponse response;
         int responseCode;
+        InputStream transferredBody = null;
 
         //Get a URL object from provided String
         URL url = new URL(urlAddress);
 
-        //Get new http connection from given URL
-        HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+        //wait for a free slot of the shared client, feeds go ahead of any other request
+        HttpClient client = HttpClient.getInstance();
+        HttpDispatcher.Permit permit = client.acquire(url, Priority.FEED);
 
         try {
-            //prepare connection and connect
+            //Get new http connection from given URL, prepare it and connect
+            HttpURLConnection httpConn = client.openConnection(url);
             prepareConnection(httpConn);
+            if (etag != null) {
+                httpConn.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+            }
+            if (lastModified != null) {
+                httpConn.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+            }
             httpConn.connect();
 
             //We get the http response code
@@ -85,34 +140,122 @@ public class ConnectionUtils {
 
             //Check if the response is OK
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                //We get the input stream from the connection
-                in = httpConn.getInputStream();
+                //We get the input stream from the connection, decompressing it if needed. The slot
+                //is held until the body is closed
+                CountingInputStream transferred = new CountingInputStream(
+                        new ReleasingInputStream(httpConn.getInputStream(), permit));
+                transferredBody = transferred;
+                CountingInputStream body = new CountingInputStream(
+                        decode(transferred, httpConn.getContentEncoding()));
+
+                //and the new validators
+                response = new FeedResponse(httpConn, transferred, body,
+                        httpConn.getHeaderField(HEADER_ETAG),
+                        httpConn.getHeaderField(HEADER_LAST_MODIFIED));
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                //The content has not changed, so the previous validators are still valid. Closing
+                //the empty body gives the connection back for reuse
+                client.discardResponse(httpConn);
+                permit.release();
+                response = new FeedResponse(null, null, null, etag, lastModified);
             } else {
-                //There was en error on the response, log it
+                //There was en error on the response, give the connection back and log it
+                client.discardResponse(httpConn);
                 String message = "Response code not OK. Response code: " + responseCode;
                 Log.e(TAG, message);
                 throw new IOException(message);
             }
         } catch (Exception ex) {
+            //the body won't be read, so give the connection back
+            if (transferredBody != null) {
+                try {
+                    transferredBody.close();
+                } catch (IOException closeEx) {
+                    Log.w(TAG, "Error closing the body of the response", closeEx);
+                }
+            }
+
+            //the request is over, let others run
+            permit.release();
+
             //There was en error connecting, log it
             String message = "Error connecting";
-            Log.e(TAG, message);
-            throw new IOException(message);
+            Log.e(TAG, message, ex);
+            throw new IOException(message, ex);
         }
 
-        return in;
+        return response;
     }
 
     /**
-     * Gives basic configuration to the http connection.
+     * Gives basic configuration to the http connection, on top of the one of the shared client.
      *
      * @param httpConn The connection
-     * @throws ProtocolException If the http verb is not allowed
      */
-    private static void prepareConnection(HttpURLConnection httpConn) throws ProtocolException {
-        httpConn.setReadTimeout(10000);
-        httpConn.setConnectTimeout(15000);
-        httpConn.setRequestMethod("GET");
-        httpConn.setDoInput(true);
+    private static void prepareConnection(HttpURLConnection httpConn) {
+        //ask for a compressed body, xml compresses very well
+        httpConn.setRequestProperty(HEADER_ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+    }
+
+    /**
+     * Wraps the body of a response with a stream which decompresses it, depending on its encoding
+     *
+     * @param in              The body as it's transferred
+     * @param contentEncoding The value of the {@code Content-Encoding} header
+     * @return The decompressed body
+     * @throws IOException If the body can't be decompressed
+     */
+    private static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding) ||
+                ENCODING_X_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            //"deflate" should be zlib wrapped, but some servers send raw deflate: check the header
+            BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+            buffered.mark(2);
+            int first = buffered.read();
+            int second = buffered.read();
+            buffered.reset();
+            boolean zlibWrapped = first != -1 && second != -1 &&
+                    (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+
+            final Inflater inflater = new Inflater(!zlibWrapped);
+            return new InflaterInputStream(buffered, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        //release the native memory of the inflater right now
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        //identity
+        return in;
+    }
+
+    /**
+     * Decorator of the body of a response which releases the slot of the request once it's closed
+     */
+    private static class ReleasingInputStream extends FilterInputStream {
+
+        private final HttpDispatcher.Permit mPermit;
+
+        ReleasingInputStream(InputStream in, HttpDispatcher.Permit permit) {
+            super(in);
+            this.mPermit = permit;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                mPermit.release();
+            }
+        }
     }
 }
@@ -0,0 +1,88 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.utils;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * The response of a conditional request for a feed.
+ * <p>
+ * Besides the body of the feed, it holds the validators sent by the server ({@code ETag} and
+ * {@code Last-Modified}), which have to be sent back on the next request for the same feed. If the
+ * feed has not changed since then, the response has no body at all.
+ * <p>
+ * The body may have been transferred compressed. It's decompressed on the fly while it's read, and
+ * both the transferred and the decoded bytes are counted. The transfer can be aborted from any thread.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class FeedResponse {
+
+    private final HttpURLConnection connection;
+    private final CountingInputStream transferred;
+    private final CountingInputStream body;
+    private final String etag;
+    private final String lastModified;
+
+    FeedResponse(HttpURLConnection connection, CountingInputStream transferred, CountingInputStream body,
+                 String etag, String lastModified) {
+        this.connection = connection;
+        this.transferred = transferred;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return The body of the feed, or {@code null} if the feed has not changed
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * Aborts the transfer of the body, from any thread. A read which is blocked waiting for the network
+     * fails right away, and so does any later one. The body still has to be closed.
+     */
+    public void abort() {
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return {@code true} if the feed has not changed since the last request, so there's nothing
+     * to parse
+     */
+    public boolean isNotModified() {
+        return body == null;
+    }
+
+    /**
+     * @return The number of bytes of the body read so far from the network, as they were
+     * transferred (i.e. compressed)
+     */
+    public long getTransferredBytes() {
+        return transferred != null ? transferred.getCount() : 0L;
+    }
+
+    /**
+     * @return The number of bytes of the body read so far, once decompressed
+     */
+    public long getDecodedBytes() {
+        return body != null ? body.getCount() : 0L;
+    }
+
+    /**
+     * @return The value of the {@code ETag} header, if any
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return The value of the {@code Last-Modified} header, if any
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,41 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.utils;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Class with hashing utils
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class HashUtils {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Computes the SHA-1 hash of a value, which is handy as a key which is safe as a file name
+     *
+     * @param value The value
+     * @return The hash of the value, as 40 lowercase hexadecimal digits
+     */
+    public static String sha1Hex(String value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            //every platform has to support SHA-1
+            throw new IllegalStateException(ex);
+        }
+
+        byte[] hash = digest.digest(value.getBytes(UTF_8));
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+}
@@ -0,0 +1,75 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool for deduplicating repeated {@link String} values.
+ * <p>
+ * Fields such as the author or the categories of the items of a feed take only a few different
+ * values, but every read of them creates a new {@link String}. Interning them through this pool
+ * makes equal values share a single instance. The pool keeps only the most recently used values,
+ * so it never grows beyond its size, and long values are never pooled.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class StringPool {
+
+    //default bounds of the pool
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+    public static final int DEFAULT_MAX_LENGTH = 256;
+
+    private final int mMaxLength;
+    private final Map<String, String> mPool;
+
+    /**
+     * Creates a pool with the default bounds
+     */
+    public StringPool() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a pool with the given bounds
+     *
+     * @param maxEntries The maximum number of different values kept in the pool
+     * @param maxLength  The maximum length of a value for being pooled
+     */
+    public StringPool(final int maxEntries, int maxLength) {
+        this.mMaxLength = maxLength;
+        //access ordered, so the least recently used value is evicted first
+        this.mPool = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the pooled instance equal to the given value, pooling it if it's not pooled yet
+     *
+     * @param value The value to intern
+     * @return The pooled instance, or the value itself if it's {@code null} or too long for being pooled
+     */
+    public synchronized String intern(String value) {
+        if (value == null || value.length() > mMaxLength) {
+            return value;
+        }
+
+        String pooled = mPool.get(value);
+        if (pooled == null) {
+            mPool.put(value, value);
+            pooled = value;
+        }
+
+        return pooled;
+    }
+
+    /**
+     * @return The number of different values in the pool
+     */
+    public synchronized int size() {
+        return mPool.size();
+    }
+}
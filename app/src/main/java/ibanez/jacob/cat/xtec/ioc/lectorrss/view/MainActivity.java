@@ -2,8 +2,10 @@ package ibanez.jacob.cat.xtec.ioc.lectorrss.view;
 
 import android.app.Activity;
 import android.content.Context;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
@@ -23,21 +25,29 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import org.xmlpull.v1.XmlPullParserException;
-
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URL;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import ibanez.jacob.cat.xtec.ioc.lectorrss.R;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.DiskLruCache;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ThumbnailCache;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ThumbnailDownloader;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.WebpTranscoder;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.AndroidXmlParserFactory;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.RssItemParser;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.AsyncRssItemRepository;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.FeedValidatorRepository;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.RssItemRepository;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.sync.SyncEngine;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.sync.SyncProgress;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.ConnectionUtils;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.StringPool;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter.ItemAdapter;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter.ItemPageLoader;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter.ThumbnailPrefetcher;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter.ThumbnailSize;
 
 /**
  * Main Activity
@@ -48,7 +58,7 @@ import ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter.ItemAdapter;
  * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
  */
 public class MainActivity extends AppCompatActivity implements View.OnClickListener,
-        TextView.OnEditorActionListener {
+        TextView.OnEditorActionListener, SyncEngine.Listener, ItemAdapter.OnPageLoadedListener {
 
     //Tag for logging purposes
     private static final String TAG = MainActivity.class.getSimpleName();
@@ -56,12 +66,28 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     //Rss url
     public static final String FEED_CHANNEL = "http://www.eldiario.es/rss/";
 
+    //Number of items read from the repository at once, a few screens of rows
+    private static final int PAGE_SIZE = 30;
+
+    //Minimum time between two refreshes of the list while a sync stores new items, in milliseconds
+    private static final long REFRESH_INTERVAL = 1000;
+
     //class members
     private LinearLayout mSearchBar;
     private EditText mSearchText;
     private ProgressBar mProgressBar;
     private ItemAdapter mItemAdapter;
-    private RssItemRepository mItemRepository;
+    private AsyncRssItemRepository mItemRepository;
+    private FeedValidatorRepository mValidatorRepository;
+    private StringPool mStringPool = new StringPool();
+    private DiskLruCache mThumbnailCache;
+    private ThumbnailDownloader mThumbnailDownloader;
+    private SyncEngine mSyncEngine;
+    private SyncEngine.Sync mSync;
+
+    //the new items of the running sync already shown, and when the list was last refreshed
+    private int mShownStoredItems;
+    private long mLastRefresh;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -78,8 +104,32 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mSearchBar = (LinearLayout) findViewById(R.id.search_bar);
         mSearchText = (EditText) findViewById(R.id.et_search);
         mProgressBar = (ProgressBar) findViewById(R.id.pb_loading_indicator);
-        mItemAdapter = new ItemAdapter(this);
-        mItemRepository = new RssItemRepository(this);
+        mThumbnailCache = ThumbnailCache.open(this);
+        mItemRepository = new AsyncRssItemRepository(new RssItemRepository(this, mThumbnailCache));
+        mItemAdapter = new ItemAdapter(this, mItemRepository);
+        mItemAdapter.setOnPageLoadedListener(this);
+        mValidatorRepository = new FeedValidatorRepository(this);
+
+        //thumbnails are downloaded in the background, stored as small webp images, and every one is
+        //shown from the main thread
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainThread = new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        };
+        //the cached thumbnails outlive a rotation, so they have to cover the widest row, in landscape
+        ThumbnailSize thumbnailSize = ThumbnailSize.largest(this);
+        WebpTranscoder transcoder = new WebpTranscoder(thumbnailSize.width, thumbnailSize.height,
+                WebpTranscoder.DEFAULT_QUALITY);
+        mThumbnailDownloader = new ThumbnailDownloader(mThumbnailCache, transcoder,
+                ThumbnailDownloader.DEFAULT_WORKERS, mainThread);
+
+        //the feed is downloaded, parsed, stored and its thumbnails downloaded all at the same time
+        RssItemParser parser = new RssItemParser(mThumbnailCache, new AndroidXmlParserFactory(), mStringPool);
+        mSyncEngine = new SyncEngine(mItemRepository, mValidatorRepository, parser, mThumbnailDownloader,
+                mainThread);
 
         //set the layout manager and the adapter of the recycler view
         RecyclerView recyclerView = (RecyclerView) findViewById(R.id.recycler_view);
@@ -87,6 +137,11 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(mItemAdapter);
 
+        //read the next page of items before reaching the end of the list, and warm up the thumbnails
+        //of the next rows while scrolling
+        recyclerView.addOnScrollListener(new ItemPageLoader(layoutManager, mItemAdapter));
+        recyclerView.addOnScrollListener(new ThumbnailPrefetcher(layoutManager, mItemAdapter));
+
         //add a decorator to separate items
         DividerItemDecoration decoration = new DividerItemDecoration(this, layoutManager.getOrientation());
         recyclerView.addItemDecoration(decoration);
@@ -102,10 +157,27 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         connectToInternetAndFeedFromRepository();
     }
 
+    @Override
+    protected void onDestroy() {
+        //the pending sync, thumbnails and items are not needed anymore
+        if (mSync != null) {
+            mSync.cancel();
+        }
+        mSyncEngine.shutdown();
+        mThumbnailDownloader.shutdown();
+        mItemAdapter.cancelPendingPage();
+        super.onDestroy();
+    }
+
     private void connectToInternetAndFeedFromRepository() {
         if (ConnectionUtils.hasConnection(this)) { //check for internet connection
-            //if there is connection, start the execution of the async task
-            new DownloadRssTask(this).execute(FEED_CHANNEL);
+            //if there is connection, start a sync of the feed, instead of any running one
+            if (mSync != null) {
+                mSync.cancel();
+            }
+            mProgressBar.setVisibility(View.VISIBLE);
+            mShownStoredItems = 0;
+            mSync = mSyncEngine.start(FEED_CHANNEL, this);
         } else {
             //fill adapter list from database
             feedListFromRepository();
@@ -115,7 +187,116 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
     private void feedListFromRepository() {
         String keyword = mSearchText.getText().toString();
-        mItemAdapter.setItems(mItemRepository.getAllItems(keyword));
+        mItemAdapter.setPager(mItemRepository.getItems(keyword, PAGE_SIZE));
+    }
+
+    /**
+     * Fills in the thumbnails of every page of items as soon as it's shown
+     *
+     * @param page The items of the page
+     */
+    @Override
+    public void onPageLoaded(List<RssItem> page) {
+        if (ConnectionUtils.hasConnection(this)) {
+            cacheImages(page);
+        }
+    }
+
+    /**
+     * Starts downloading in the background the thumbnails which are not in the app's cache yet, and
+     * revalidating the stale ones.
+     * <p>
+     * The items are already shown, and every thumbnail fills in as soon as its download completes.
+     * The thumbnails of the new items of the running sync are left to the sync.
+     *
+     * @param items A collection of {@link RssItem}s
+     */
+    private void cacheImages(List<RssItem> items) {
+        for (RssItem item : items) {
+            if (mSync == null || !mSync.ownsThumbnail(item)) {
+                mThumbnailDownloader.download(item, this);
+            }
+        }
+    }
+
+    /**
+     * Shows the new items as soon as the first batch of them is stored, and then every now and then
+     * while the sync goes on, so the list isn't rebuilt for every batch
+     *
+     * @param progress The progress of the sync
+     */
+    @Override
+    public void onSyncProgress(SyncProgress progress) {
+        Log.v(TAG, "Sync of " + FEED_CHANNEL + ": " + progress);
+
+        if (progress.getStoredItems() > mShownStoredItems && (mShownStoredItems == 0 ||
+                SystemClock.uptimeMillis() - mLastRefresh >= REFRESH_INTERVAL)) {
+            showStoredItems(progress);
+        }
+    }
+
+    /**
+     * Feeds the list of items of the recycler view's adapter with the last new items, unless they
+     * are already shown. The thumbnails of every page are filled in later.
+     *
+     * @param progress The progress of the sync
+     */
+    @Override
+    public void onItemsStored(SyncProgress progress) {
+        //hide the progress bar, so the result from the internet has arrived
+        mProgressBar.setVisibility(View.INVISIBLE);
+        Log.d(TAG, "Stored " + progress.getStoredItems() + " new items of " + progress.getParsedItems());
+
+        if (progress.getStoredItems() == mShownStoredItems && mItemAdapter.getItemCount() > 0) {
+            //there's nothing new left and the items are already shown, so there's nothing else to do
+            return;
+        }
+        showStoredItems(progress);
+    }
+
+    private void showStoredItems(SyncProgress progress) {
+        mShownStoredItems = progress.getStoredItems();
+        mLastRefresh = SystemClock.uptimeMillis();
+        feedListFromRepository();
+    }
+
+    @Override
+    public void onSyncFinished(SyncProgress progress) {
+        mSync = null;
+
+        //the body may have been transferred compressed, log the savings
+        Log.d(TAG, "Feed " + FEED_CHANNEL + " transferred " + progress.getTransferredBytes() +
+                " bytes, decoded to " + progress.getDecodedBytes() + " bytes, " +
+                progress.getCachedThumbnails() + " thumbnails cached");
+    }
+
+    /**
+     * Shows the stored items anyway if the sync fails
+     *
+     * @param progress The progress of the sync
+     * @param error    The error
+     */
+    @Override
+    public void onSyncFailed(SyncProgress progress, Exception error) {
+        mSync = null;
+        mProgressBar.setVisibility(View.INVISIBLE);
+        Log.e(TAG, "There was an error while syncing the rss file from " + FEED_CHANNEL, error);
+        feedListFromRepository();
+    }
+
+    /**
+     * Shows the thumbnail of an item as soon as it's in the app's cache
+     *
+     * @param item The item
+     */
+    @Override
+    public void onThumbnailCached(RssItem item) {
+        mItemAdapter.notifyThumbnailCached(item);
+    }
+
+    @Override
+    public void onThumbnailFailed(RssItem item, IOException error) {
+        Log.e(TAG, "Error downloading image from " + item.getThumbnail(), error);
     }
 
     /**
@@ -202,110 +383,6 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
-    /**
-     * This class is a task for downloading a Rss file from the internet in a background thread
-     */
-    private class DownloadRssTask extends AsyncTask<String, Void, List<RssItem>> {
-
-        private Context mContext;
-
-        DownloadRssTask(Context context) {
-            this.mContext = context;
-        }
-
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-            //set progress bar visible
-            mProgressBar.setVisibility(View.VISIBLE);
-        }
-
-        @Override
-        protected List<RssItem> doInBackground(String... strings) {
-            List<RssItem> result = null;
-
-            try {
-                //get the XML from the feed url and process it
-                result = getRssItems(strings[0]);
-                //download thumbnails to the cache directory
-                cacheImages(result);
-            } catch (IOException | XmlPullParserException ex) {
-                Log.e(TAG, "There was an error while downloading the rss file from " + FEED_CHANNEL);
-            }
-
-            return result;
-        }
-
-        /**
-         * Accesses the parser and get the collection of {@link RssItem}s
-         *
-         * @param url The rss feed url
-         * @return The collection of {@link RssItem}s
-         * @throws IOException            If there's any Input/Output error
-         * @throws XmlPullParserException If the parsing process goes wrong
-         */
-        private List<RssItem> getRssItems(String url) throws IOException, XmlPullParserException {
-            InputStream in = null;
-            RssItemParser parser = new RssItemParser(mContext);
-            List<RssItem> result = null;
-
-            try {
-                in = ConnectionUtils.openHttpConnection(url);
-                result = parser.parse(in);
-            } finally {
-                if (in != null) {
-                    in.close();
-                }
-            }
-
-            return result;
-        }
-
-        /**
-         * Download the image from the internet and stores it in the app's cache
-         *
-         * @param items A collection of {@link RssItem}s
-         */
-        private void cacheImages(List<RssItem> items) {
-            for (RssItem item : items) {
-                try {
-                    //get the bytes of the image from the internet
-                    URL imageUrl = new URL(item.getThumbnail());
-                    InputStream inputStream = (InputStream) imageUrl.getContent();
-                    byte[] bufferImage = new byte[1024];
-
-                    //open a stream to the app's cache
-                    OutputStream outputStream = new FileOutputStream(item.getImagePathInCache());
-
-                    int count;
-                    while ((count = inputStream.read(bufferImage)) != -1) {
-                        outputStream.write(bufferImage, 0, count); //write the bytes from the internet to the cache
-                    }
-
-                    //close both input and output streams
-                    inputStream.close();
-                    outputStream.close();
-                } catch (IOException ex) {
-                    Log.e(TAG, "Error downloading image from " + item.getThumbnail(), ex);
-                }
-            }
-        }
-
-        @Override
-        protected void onPostExecute(List<RssItem> items) {
-            //save all the info from the XML file to the database
-            for (RssItem item : items) {
-                mItemRepository.insertItem(item);
-            }
-
-            //hide the progress bar, so the result from the internet has arrived
-            mProgressBar.setVisibility(View.INVISIBLE);
-
-            //feed the list of items of the recycler view's adapter
-            feedListFromRepository();
-        }
-    }
-
     /**
      * A method for hiding the Android virtual keyboard
      *
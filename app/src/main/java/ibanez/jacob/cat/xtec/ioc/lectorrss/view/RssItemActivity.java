@@ -3,11 +3,15 @@ package ibanez.jacob.cat.xtec.ioc.lectorrss.view;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
 import ibanez.jacob.cat.xtec.ioc.lectorrss.R;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ThumbnailCache;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.AsyncRssItemRepository;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.RssItemRepository;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.ConnectionUtils;
 
 /**
@@ -17,10 +21,18 @@ import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.ConnectionUtils;
  */
 public class RssItemActivity extends AppCompatActivity {
 
+    //Tag for logging purposes
+    private static final String TAG = RssItemActivity.class.getSimpleName();
+
     /**
-     * The constant EXTRA_ITEM for sending a {@link RssItem} between activities inside an {@link Intent}.
+     * The constant EXTRA_ITEM_ID for sending the id of a {@link RssItem} between activities inside an
+     * {@link Intent}. The item itself is read from the {@link RssItemRepository}.
      */
-    public static final String EXTRA_ITEM = RssItemActivity.class.getCanonicalName() + ".ITEM";
+    public static final String EXTRA_ITEM_ID = RssItemActivity.class.getCanonicalName() + ".ITEM_ID";
+
+    //class members
+    private WebView mWebView;
+    private AsyncRssItemRepository.Task mItemTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,12 +40,42 @@ public class RssItemActivity extends AppCompatActivity {
         setContentView(R.layout.activity_rss_item);
 
         //Get the reference of the web view in the layout
-        WebView webView = (WebView) findViewById(R.id.web_view);
+        mWebView = (WebView) findViewById(R.id.web_view);
 
-        //we receive the extras from the main activity and retrieve the RssItem from it
-        Bundle extras = getIntent().getExtras();
-        RssItem item = (RssItem) extras.getSerializable(EXTRA_ITEM);
+        //we receive the id of the item from the main activity and read the whole RssItem in the background
+        long id = getIntent().getLongExtra(EXTRA_ITEM_ID, 0);
+        AsyncRssItemRepository repository = new AsyncRssItemRepository(
+                new RssItemRepository(this, ThumbnailCache.open(this)));
+        mItemTask = repository.getItemById(id, new AsyncRssItemRepository.Callback<RssItem>() {
+            @Override
+            public void onResult(RssItem item) {
+                mItemTask = null;
+                showItem(item);
+            }
 
+            @Override
+            public void onError(RuntimeException error) {
+                mItemTask = null;
+                Log.e(TAG, "Error reading the item", error);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        //the item is not needed anymore
+        if (mItemTask != null) {
+            mItemTask.cancel();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Shows an item, either its link or, if there's no connection, its content
+     *
+     * @param item The item, or {@code null} if it doesn't exist
+     */
+    private void showItem(RssItem item) {
         if (item != null) {
             if (getSupportActionBar() != null) {
                 //Change the toolbar's title to the item's title
@@ -42,13 +84,13 @@ public class RssItemActivity extends AppCompatActivity {
 
             if (ConnectionUtils.hasConnection(this)) {
                 //if there's internet connection, show the link of the item in the web view
-                webView.setWebViewClient(new WebViewClient());
-                webView.loadUrl(item.getLink());
+                mWebView.setWebViewClient(new WebViewClient());
+                mWebView.loadUrl(item.getLink());
             } else {
                 //otherwise, create an HTML with title, description, author, categories, and publish date
                 //and show it in the web view
                 String html = buildHtmlFromItem(item);
-                webView.loadData(html, "text/html; charset=UTF-8", null);
+                mWebView.loadData(html, "text/html; charset=UTF-8", null);
             }
         }
     }
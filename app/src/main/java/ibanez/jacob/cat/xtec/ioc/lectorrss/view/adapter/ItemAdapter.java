@@ -2,8 +2,7 @@ package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.drawable.Drawable;
-import android.os.Bundle;
+import android.util.Log;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,37 +10,181 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import ibanez.jacob.cat.xtec.ioc.lectorrss.R;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ImageLoader;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.AsyncRssItemRepository;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.RssItemPager;
 import ibanez.jacob.cat.xtec.ioc.lectorrss.view.RssItemActivity;
 
 /**
  * A subclass of {@link android.support.v7.widget.RecyclerView.Adapter} for {@link RssItem}s
+ * <p>
+ * The items are read from a {@link RssItemPager} one page at a time, as the list is scrolled (see
+ * {@link ItemPageLoader}), so only the pages which have been reached are in memory. Pages are read in
+ * the background, one at a time.
  *
  * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
  */
 public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemAdapterViewHolder> {
 
+    //Tag for logging purposes
+    private static final String TAG = ItemAdapter.class.getSimpleName();
+
     //class members
     private List<RssItem> mItems;
+    private AsyncRssItemRepository mRepository;
+    private RssItemPager mPager;
+    private AsyncRssItemRepository.Task mPageTask;
+    private OnPageLoadedListener mOnPageLoadedListener;
     private Context mContext;
+    private ImageLoader mImageLoader;
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
 
     //constructor
-    public ItemAdapter(Context mContext) {
+    public ItemAdapter(Context mContext, AsyncRssItemRepository repository) {
         this.mContext = mContext;
+        this.mRepository = repository;
+        this.mImageLoader = ImageLoader.getInstance();
+
+        //thumbnails are decoded at the size they are shown, never at full resolution. Until a row has
+        //been laid out, the size is worked out from the layout of the row and the width of the screen
+        ThumbnailSize size = ThumbnailSize.ofScreen(mContext);
+        this.mThumbnailWidth = size.width;
+        this.mThumbnailHeight = size.height;
     }
 
     /**
-     * This is handy if we want to add new items to the list, but don't want to instantiate a new
-     * adapter.
+     * This is handy if we want to show new items in the list, but don't want to instantiate a new
+     * adapter. The list starts over with the first page of the pager.
      *
-     * @param items The new list
+     * @param pager The pager of the new items
      */
-    public void setItems(List<RssItem> items) {
-        this.mItems = items;
+    public void setPager(RssItemPager pager) {
+        //the pending page belongs to the previous pager
+        cancelPendingPage();
+
+        this.mPager = pager;
+        this.mItems = new ArrayList<>();
         this.notifyDataSetChanged();
+        loadNextPage();
+    }
+
+    /**
+     * Sets the listener which is told about every page appended to the list
+     *
+     * @param listener The listener, or {@code null}
+     */
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        this.mOnPageLoadedListener = listener;
+    }
+
+    /**
+     * @return {@code true} if there may be more pages to append to the list
+     */
+    boolean hasMorePages() {
+        return mPager != null && mPager.hasMore();
+    }
+
+    /**
+     * Appends the next page of items to the list, if there's any, once it has been read in the
+     * background. It does nothing while a page is being read.
+     */
+    void loadNextPage() {
+        if (!hasMorePages() || mPageTask != null) {
+            return;
+        }
+
+        mPageTask = mRepository.nextPage(mPager, new AsyncRssItemRepository.Callback<List<RssItem>>() {
+            @Override
+            public void onResult(List<RssItem> page) {
+                mPageTask = null;
+                appendPage(page);
+            }
+
+            @Override
+            public void onError(RuntimeException error) {
+                mPageTask = null;
+                Log.e(TAG, "Error reading a page of items", error);
+            }
+        });
+    }
+
+    /**
+     * Stops reading the pending page, if any
+     */
+    public void cancelPendingPage() {
+        if (mPageTask != null) {
+            mPageTask.cancel();
+            mPageTask = null;
+        }
+    }
+
+    /**
+     * Appends a page of items to the list
+     *
+     * @param page The items of the page
+     */
+    private void appendPage(List<RssItem> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+
+        int start = mItems.size();
+        mItems.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+
+        if (mOnPageLoadedListener != null) {
+            mOnPageLoadedListener.onPageLoaded(page);
+        }
+    }
+
+    /**
+     * Refreshes the row of an item whose thumbnail has just been stored in the app's cache
+     *
+     * @param item The item
+     */
+    public void notifyThumbnailCached(RssItem item) {
+        if (mItems == null) {
+            return;
+        }
+
+        //the decoded thumbnail, if any, is outdated
+        if (item.getImagePathInCache() != null) {
+            mImageLoader.invalidate(item.getImagePathInCache());
+        }
+
+        //the item may come from another query, so look it up by its thumbnail
+        for (int position = 0; position < mItems.size(); position++) {
+            String path = mItems.get(position).getImagePathInCache();
+            if (path != null && path.equals(item.getImagePathInCache())) {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    /**
+     * Decodes into memory the thumbnails of a range of rows, before they are shown
+     *
+     * @param from The first position of the range
+     * @param to   The last position of the range, inclusive
+     */
+    void prefetchThumbnails(int from, int to) {
+        for (int position = Math.max(0, from); position <= to && position < getItemCount(); position++) {
+            mImageLoader.prefetch(mItems.get(position).getImagePathInCache(), mThumbnailWidth,
+                    mThumbnailHeight);
+        }
+    }
+
+    /**
+     * @return How many thumbnails fit in memory at the same time
+     */
+    int getThumbnailCapacity() {
+        return mImageLoader.getCapacity(mThumbnailWidth, mThumbnailHeight);
     }
 
     /**
@@ -73,21 +216,60 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemAdapterVie
         //set the content of the layout
         holder.mTitle.setText(item.getTitle());
 
-        //the image of the layout could vary depending on if the cache has the image, or if there's no image at all
-        boolean hasCachePath = item.getImagePathInCache() != null && item.getImagePathInCache().length() > 0;
-        boolean pathExists = Drawable.createFromPath(item.getImagePathInCache()) != null;
-        if (hasCachePath && pathExists) {
-            holder.mThumbnail.setImageDrawable(Drawable.createFromPath(item.getImagePathInCache())); //the image is in the cache
-        } else {
-            holder.mThumbnail.setImageResource(android.R.drawable.ic_menu_report_image); //there's no image or the cache is empty
+        //the row may be showing another item, so forget about its thumbnail
+        holder.cancelThumbnail();
+        updateThumbnailSize(holder.mThumbnail);
+
+        //the image is decoded in the background, and the placeholder is shown until it's ready, or if
+        //there's no image or the cache is empty
+        holder.mThumbnailRequest = mImageLoader.load(item.getImagePathInCache(), holder.mThumbnail,
+                mThumbnailWidth, mThumbnailHeight, android.R.drawable.ic_menu_report_image);
+    }
+
+    /**
+     * Takes the size of the thumbnails from a view which has already been laid out, as every row has
+     * the same size, so they are decoded at exactly the size they are shown
+     *
+     * @param view The view of the thumbnail of a row
+     */
+    private void updateThumbnailSize(ImageView view) {
+        int width = view.getWidth() - view.getPaddingLeft() - view.getPaddingRight();
+        int height = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+        if (width > 0 && height > 0) {
+            mThumbnailWidth = width;
+            mThumbnailHeight = height;
         }
     }
 
+    /**
+     * Cancels the pending thumbnail of a row which is going to be reused
+     *
+     * @param holder The view representing a single item in the recycler view's collection
+     */
+    @Override
+    public void onViewRecycled(ItemAdapterViewHolder holder) {
+        holder.cancelThumbnail();
+        super.onViewRecycled(holder);
+    }
+
     @Override
     public int getItemCount() {
         return mItems != null && !mItems.isEmpty() ? mItems.size() : 0;
     }
 
+    /**
+     * Listener of the pages appended to the list
+     */
+    public interface OnPageLoadedListener {
+
+        /**
+         * A page of items has been appended to the list
+         *
+         * @param page The items of the page
+         */
+        void onPageLoaded(List<RssItem> page);
+    }
+
     /**
      * This is the class for representing a single item in the recycler view. It also implements
      * {@link View.OnClickListener} and {@link View.OnLongClickListener}
@@ -101,6 +283,9 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemAdapterVie
         final ImageView mThumbnail;
         final TextView mTitle;
 
+        //the thumbnail being loaded into this row, if any
+        ImageLoader.Request mThumbnailRequest;
+
         ItemAdapterViewHolder(View itemView) {
             super(itemView);
 
@@ -113,6 +298,16 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemAdapterVie
             itemView.setOnLongClickListener(this);
         }
 
+        /**
+         * Cancels the thumbnail being loaded into this row, if any
+         */
+        void cancelThumbnail() {
+            if (mThumbnailRequest != null) {
+                mThumbnailRequest.cancel();
+                mThumbnailRequest = null;
+            }
+        }
+
         /**
          * Implements behavior when a single item of the list is clicked
          *
@@ -127,12 +322,10 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemAdapterVie
             //create an intent to open the selected item in a new activity
             Intent intent = new Intent(mContext, RssItemActivity.class);
 
-            //put the item in a bundle
-            Bundle extras = new Bundle();
-            extras.putSerializable(RssItemActivity.EXTRA_ITEM, item);
+            //only the id of the item goes in the intent, the new activity reads the whole item
+            intent.putExtra(RssItemActivity.EXTRA_ITEM_ID, item.getId());
 
-            //put the bundle in the intent and start the new activity
-            intent.putExtras(extras);
+            //start the new activity
             if (intent.resolveActivity(mContext.getPackageManager()) != null) {
                 mContext.startActivity(intent);
             }
@@ -0,0 +1,51 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Listener of the scroll of a {@link RecyclerView} fed by an {@link ItemAdapter}, which appends the
+ * next page of items before the end of the list is reached, so the scroll never stops at a page
+ * boundary.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class ItemPageLoader extends RecyclerView.OnScrollListener {
+
+    //Rows left before the end of the list when the next page is appended
+    private static final int ROWS_AHEAD = 10;
+
+    private final LinearLayoutManager mLayoutManager;
+    private final ItemAdapter mAdapter;
+
+    //a page is about to be appended
+    private boolean mPending;
+
+    public ItemPageLoader(LinearLayoutManager layoutManager, ItemAdapter adapter) {
+        this.mLayoutManager = layoutManager;
+        this.mAdapter = adapter;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        //only scrolling down gets closer to the end
+        if (dy <= 0 || mPending || !mAdapter.hasMorePages()) {
+            return;
+        }
+
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (last == RecyclerView.NO_POSITION || last < mAdapter.getItemCount() - ROWS_AHEAD) {
+            return;
+        }
+
+        //the adapter must not change in the middle of a scroll, so append the page right after it
+        mPending = true;
+        recyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                mPending = false;
+                mAdapter.loadNextPage();
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+/**
+ * Tells which rows of a list should have their thumbnails prefetched after every scroll, as the
+ * {@link ThumbnailPrefetcher} does.
+ * <p>
+ * The faster the scroll, the further it looks ahead, but never beyond what fits in the memory cache
+ * next to the visible rows, nor beyond the rows of the list. Rows which have already been prefetched
+ * in the current direction are not prefetched again.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+class PrefetchWindow {
+
+    //Frames of scroll, at the current speed, the prefetching looks ahead
+    static final int FRAMES_AHEAD = 10;
+
+    //Share of the memory cache which can be used by the prefetched thumbnails
+    static final int MEMORY_SHARE = 2;
+
+    //the last position already prefetched in the current direction
+    private int mDirection;
+    private int mPrefetchedUntil;
+
+    /**
+     * Forgets about the rows already prefetched, i.e. because the list has new rows
+     */
+    void reset() {
+        mDirection = 0;
+        mPrefetchedUntil = 0;
+    }
+
+    /**
+     * Computes the rows to prefetch after a scroll
+     *
+     * @param first      The first visible position
+     * @param last       The last visible position
+     * @param dy         The distance scrolled, positive when scrolling down
+     * @param viewHeight The height of the list, in pixels
+     * @param capacity   How many thumbnails fit in memory at the same time
+     * @param itemCount  The number of rows of the list
+     * @return The first and the last position of the rows to prefetch, inclusive, or {@code null} if
+     * there's nothing to prefetch
+     */
+    int[] next(int first, int last, int dy, int viewHeight, int capacity, int itemCount) {
+        if (dy == 0 || first < 0 || last < first) {
+            return null;
+        }
+
+        int visible = last - first + 1;
+        int direction = dy > 0 ? 1 : -1;
+        if (direction != mDirection) {
+            //start over in the new direction
+            mDirection = direction;
+            mPrefetchedUntil = direction > 0 ? last : first;
+        }
+
+        int lookahead = lookahead(visible, dy, viewHeight, capacity);
+        if (lookahead <= 0) {
+            return null;
+        }
+
+        //only the rows not prefetched yet, and only the ones the list actually has: the rows of a page
+        //appended later are prefetched once they are reached
+        if (direction > 0) {
+            int from = Math.max(last + 1, mPrefetchedUntil + 1);
+            int to = Math.min(last + lookahead, itemCount - 1);
+            if (from > to) {
+                return null;
+            }
+            mPrefetchedUntil = to;
+            return new int[]{from, to};
+        } else {
+            int from = Math.max(first - lookahead, 0);
+            int to = Math.min(first - 1, mPrefetchedUntil - 1);
+            if (from > to) {
+                return null;
+            }
+            mPrefetchedUntil = from;
+            return new int[]{from, to};
+        }
+    }
+
+    /**
+     * Computes how many rows ahead of the visible ones should be prefetched
+     *
+     * @param visible    The number of visible rows
+     * @param dy         The distance scrolled in a frame
+     * @param viewHeight The height of the list, in pixels
+     * @param capacity   How many thumbnails fit in memory at the same time
+     * @return The number of rows, which may be zero or less if there's no room in memory
+     */
+    static int lookahead(int visible, int dy, int viewHeight, int capacity) {
+        //rows scrolled in a single frame, which tells the speed of the scroll
+        int rowHeight = Math.max(1, viewHeight / visible);
+        int rowsPerFrame = Math.abs(dy) / rowHeight;
+        int lookahead = visible + rowsPerFrame * FRAMES_AHEAD;
+
+        //never prefetch more than fits in memory next to the visible rows
+        int maxLookahead = capacity / MEMORY_SHARE - visible;
+        return Math.min(lookahead, maxLookahead);
+    }
+}
@@ -0,0 +1,48 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Listener of the scroll of a {@link RecyclerView} fed by an {@link ItemAdapter}, which prefetches
+ * the thumbnails of the next rows in the direction of travel, so they come on screen already decoded.
+ * <p>
+ * The faster the scroll, the further it looks ahead. The lookahead is bounded by the memory cache, so
+ * the prefetched thumbnails never evict the ones on screen (see {@link PrefetchWindow}).
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+
+    private final LinearLayoutManager mLayoutManager;
+    private final ItemAdapter mAdapter;
+    private final PrefetchWindow mWindow = new PrefetchWindow();
+
+    public ThumbnailPrefetcher(LinearLayoutManager layoutManager, ItemAdapter adapter) {
+        this.mLayoutManager = layoutManager;
+        this.mAdapter = adapter;
+
+        //a new list (i.e. a search or a refresh) has nothing prefetched yet
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                mWindow.reset();
+            }
+        });
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        int[] range = mWindow.next(first, last, dy, recyclerView.getHeight(),
+                mAdapter.getThumbnailCapacity(), mAdapter.getItemCount());
+        if (range != null) {
+            mAdapter.prefetchThumbnails(range[0], range[1]);
+        }
+    }
+}
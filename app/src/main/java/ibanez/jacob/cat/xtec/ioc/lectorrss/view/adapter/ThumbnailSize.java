@@ -0,0 +1,79 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.R;
+
+/**
+ * The size, in pixels, of the thumbnail of a row of the list ({@code rss_item}), without its padding.
+ * <p>
+ * The thumbnail and the title share the width of the row by their weights, so the width of the
+ * thumbnail depends on the width of the list, i.e. on the screen and its orientation, while its
+ * height is the one of the row.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+public final class ThumbnailSize {
+
+    public final int width;
+    public final int height;
+
+    ThumbnailSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Works out the size of the thumbnails in a list as wide as the screen, in its current orientation
+     *
+     * @param context The context
+     * @return The size of the thumbnails
+     */
+    public static ThumbnailSize ofScreen(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return ofRow(context.getResources(), metrics.widthPixels);
+    }
+
+    /**
+     * Works out the largest size the thumbnails can be shown at, in a list as wide as the longest side
+     * of the screen (i.e. in landscape)
+     *
+     * @param context The context
+     * @return The largest size of the thumbnails
+     */
+    public static ThumbnailSize largest(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return ofRow(context.getResources(), Math.max(metrics.widthPixels, metrics.heightPixels));
+    }
+
+    private static ThumbnailSize ofRow(Resources resources, int rowWidth) {
+        int padding = resources.getDimensionPixelSize(R.dimen.item_padding);
+        int width = share(rowWidth, getFloat(resources, R.dimen.item_thumbnail_weight),
+                getFloat(resources, R.dimen.item_title_weight), padding);
+        int height = resources.getDimensionPixelSize(R.dimen.item_height) - 2 * padding;
+        return new ThumbnailSize(width, Math.max(1, height));
+    }
+
+    /**
+     * Works out the width of a view inside a row, from its weight
+     *
+     * @param rowWidth    The width of the row
+     * @param weight      The weight of the view
+     * @param otherWeight The weight of the rest of the views of the row
+     * @param padding     The padding of the view on every side
+     * @return The width of the content of the view, at least one pixel
+     */
+    static int share(int rowWidth, float weight, float otherWeight, int padding) {
+        int width = Math.round(rowWidth * weight / (weight + otherWeight)) - 2 * padding;
+        return Math.max(1, width);
+    }
+
+    private static float getFloat(Resources resources, int id) {
+        TypedValue value = new TypedValue();
+        resources.getValue(id, value, true);
+        return value.getFloat();
+    }
+}
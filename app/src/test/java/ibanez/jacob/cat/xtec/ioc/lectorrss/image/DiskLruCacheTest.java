@@ -0,0 +1,120 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DiskLruCache}
+ */
+public class DiskLruCacheTest {
+
+    private static final String URL_A = "http://a.example.com/thumb.jpg";
+    private static final String URL_B = "http://b.example.com/thumb.jpg";
+    private static final String URL_C = "http://c.example.com/thumb.jpg";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void sameFileNameInDifferentUrlsNeverCollides() throws Exception {
+        DiskLruCache cache = new DiskLruCache(mFolder.getRoot(), 1000);
+
+        put(cache, URL_A, 10);
+        put(cache, URL_B, 20);
+
+        assertNotEquals(cache.resolve(URL_A), cache.resolve(URL_B));
+        assertEquals(10, cache.get(URL_A).length());
+        assertEquals(20, cache.get(URL_B).length());
+        assertEquals(30, cache.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntries() throws Exception {
+        DiskLruCache cache = new DiskLruCache(mFolder.getRoot(), 100);
+
+        put(cache, URL_A, 40);
+        put(cache, URL_B, 40);
+        //A becomes the most recently used one
+        assertNotNull(cache.get(URL_A));
+        put(cache, URL_C, 40);
+
+        assertNotNull(cache.get(URL_A));
+        assertNull(cache.get(URL_B));
+        assertFalse(new File(cache.resolve(URL_B)).exists());
+        assertNotNull(cache.get(URL_C));
+        assertEquals(80, cache.size());
+    }
+
+    @Test
+    public void reopeningKeepsTheOrderOfUse() throws Exception {
+        DiskLruCache cache = new DiskLruCache(mFolder.getRoot(), 100);
+        put(cache, URL_A, 40);
+        put(cache, URL_B, 40);
+        cache.get(URL_A);
+
+        //the budget is smaller now, so the least recently used entry goes away
+        DiskLruCache reopened = new DiskLruCache(mFolder.getRoot(), 50);
+
+        assertNotNull(reopened.get(URL_A));
+        assertNull(reopened.get(URL_B));
+        assertEquals(40, reopened.size());
+    }
+
+    @Test
+    public void reopeningKeepsTheValidatorsOfTheEntries() throws Exception {
+        DiskLruCache cache = new DiskLruCache(mFolder.getRoot(), 100);
+        put(cache, URL_A, 10, "W/\"a b\"", "Wed, 21 Oct 2015 07:28:00 GMT");
+        put(cache, URL_B, 10);
+
+        DiskLruCache reopened = new DiskLruCache(mFolder.getRoot(), 100);
+
+        assertEquals("W/\"a b\"", reopened.getEtag(URL_A));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", reopened.getLastModified(URL_A));
+        assertNull(reopened.getEtag(URL_B));
+        assertNull(reopened.getLastModified(URL_B));
+        assertNull(reopened.getEtag(URL_C));
+    }
+
+    @Test
+    public void recoversFromACrash() throws Exception {
+        DiskLruCache cache = new DiskLruCache(mFolder.getRoot(), 1000);
+        put(cache, URL_A, 10);
+        put(cache, URL_B, 10);
+
+        //a download interrupted by a crash, an entry deleted behind the back of the cache, and a
+        //truncated line at the end of the journal
+        File orphan = cache.newTempFile(URL_C);
+        assertTrue(new File(cache.resolve(URL_B)).delete());
+        OutputStream journal = new FileOutputStream(new File(mFolder.getRoot(), DiskLruCache.JOURNAL_FILE), true);
+        journal.write("CLEAN 12".getBytes("UTF-8"));
+        journal.close();
+
+        DiskLruCache reopened = new DiskLruCache(mFolder.getRoot(), 1000);
+
+        assertNotNull(reopened.get(URL_A));
+        assertNull(reopened.get(URL_B));
+        assertFalse(orphan.exists());
+        assertEquals(10, reopened.size());
+    }
+
+    private static void put(DiskLruCache cache, String url, int size) throws IOException {
+        put(cache, url, size, null, null);
+    }
+
+    private static void put(DiskLruCache cache, String url, int size, String etag, String lastModified)
+            throws IOException {
+        File tempFile = cache.newTempFile(url);
+        OutputStream out = new FileOutputStream(tempFile);
+        out.write(new byte[size]);
+        out.close();
+        cache.commit(url, tempFile, etag, lastModified);
+    }
+}
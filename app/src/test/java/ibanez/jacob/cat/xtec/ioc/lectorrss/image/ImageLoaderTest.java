@@ -0,0 +1,25 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the sizing of the thumbnails of {@link ImageLoader}
+ */
+public class ImageLoaderTest {
+
+    @Test
+    public void calculateInSampleSize_keepsTheImageAtLeastAsBigAsRequested() {
+        //1200x800 shown at 150x100 can be subsampled by 8
+        assertEquals(8, ImageLoader.calculateInSampleSize(1200, 800, 150, 100));
+        //but never below the requested size in any dimension
+        assertEquals(4, ImageLoader.calculateInSampleSize(1200, 800, 150, 150));
+    }
+
+    @Test
+    public void calculateInSampleSize_neverUpsamples() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(100, 100, 150, 150));
+        assertEquals(1, ImageLoader.calculateInSampleSize(250, 250, 150, 150));
+    }
+}
@@ -0,0 +1,290 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.image;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ThumbnailDownloader}, against a local stand-in http server
+ */
+public class ThumbnailDownloaderTest {
+
+    private static final byte[] IMAGE = new byte[40 * 1024];
+    private static final String ETAG = "\"thumb-v1\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @Rule
+    public TemporaryFolder mCacheDir = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private DiskLruCache mCache;
+    private ThumbnailDownloader mDownloader;
+    private volatile int mConditionalRequests;
+    private final List<Integer> mClientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+    private final BlockingQueue<Object> mOutcomes = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Arrays.fill(IMAGE, (byte) 7);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/img", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                mClientPorts.add(exchange.getRemoteAddress().getPort());
+                if (path.endsWith("missing.jpg")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else if (path.endsWith("broken.jpg")) {
+                    //an error with a page of its own
+                    byte[] page = "<html>Internal error</html>".getBytes("UTF-8");
+                    exchange.sendResponseHeaders(500, page.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(page);
+                    out.close();
+                } else if (path.endsWith("partial.jpg")) {
+                    //a body which is not the whole thumbnail
+                    exchange.sendResponseHeaders(206, IMAGE.length / 2);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(IMAGE, 0, IMAGE.length / 2);
+                    out.close();
+                } else if (path.endsWith("unrequested.jpg")) {
+                    //"not modified" for a thumbnail which was never cached
+                    exchange.sendResponseHeaders(304, -1);
+                } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) &&
+                        LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                    //the thumbnails never change, but only the exact validators of the server match
+                    mConditionalRequests++;
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+                    exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                    exchange.sendResponseHeaders(200, IMAGE.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(IMAGE);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/img/";
+
+        //run the callbacks right in the worker
+        mCache = new DiskLruCache(mCacheDir.getRoot(), 1024 * 1024);
+        mDownloader = new ThumbnailDownloader(mCache, null, 2, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mDownloader.shutdown();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void download_storesThumbnailsInTheCache() throws Exception {
+        RssItem first = newItem("first.jpg");
+        RssItem second = newItem("second.jpg");
+
+        assertTrue(mDownloader.download(first, new RecordingCallback()));
+        assertTrue(mDownloader.download(second, new RecordingCallback()));
+
+        assertNotNull(mOutcomes.poll(5, TimeUnit.SECONDS));
+        assertNotNull(mOutcomes.poll(5, TimeUnit.SECONDS));
+        assertArrayEquals(IMAGE, Files.readAllBytes(new File(first.getImagePathInCache()).toPath()));
+        assertArrayEquals(IMAGE, Files.readAllBytes(new File(second.getImagePathInCache()).toPath()));
+
+        //already in the cache, so the worker neither downloads it again nor reports it
+        mDownloader.download(first, new RecordingCallback());
+        assertNull(mOutcomes.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, mConditionalRequests);
+    }
+
+    @Test
+    public void downloadNow_storesTheThumbnailInTheCallingThread() throws Exception {
+        RssItem item = newItem("now.jpg");
+
+        assertTrue(mDownloader.downloadNow(item));
+        assertArrayEquals(IMAGE, Files.readAllBytes(new File(item.getImagePathInCache()).toPath()));
+
+        //fresh, so it's not downloaded again, and no callback is ever involved
+        assertFalse(mDownloader.downloadNow(item));
+        assertNull(mOutcomes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void download_revalidatesStaleThumbnails() throws Exception {
+        RssItem item = newItem("stale.jpg");
+        assertTrue(mDownloader.downloadNow(item));
+        File file = new File(item.getImagePathInCache());
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * ThumbnailDownloader.MAX_AGE));
+
+        assertTrue(mDownloader.download(item, new RecordingCallback()));
+
+        //unchanged, so it's kept and fresh again, with no callback at all
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!ThumbnailDownloader.isFresh(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(ThumbnailDownloader.isFresh(file));
+        assertEquals(1, mConditionalRequests);
+        assertNull(mOutcomes.poll(100, TimeUnit.MILLISECONDS));
+        assertArrayEquals(IMAGE, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void downloadNow_downloadsAStaleThumbnailWithoutValidatorsAgain() throws Exception {
+        RssItem item = newItem("novalidators.jpg");
+        File tempFile = mCache.newTempFile(item.getThumbnail());
+        Files.write(tempFile.toPath(), new byte[]{1, 2, 3});
+        mCache.commit(item.getThumbnail(), tempFile);
+        File file = new File(item.getImagePathInCache());
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * ThumbnailDownloader.MAX_AGE));
+
+        //the time of the file is not a validator of the server, so nothing is revalidated
+        assertTrue(mDownloader.downloadNow(item));
+
+        assertEquals(0, mConditionalRequests);
+        assertArrayEquals(IMAGE, Files.readAllBytes(file.toPath()));
+        assertEquals(ETAG, mCache.getEtag(item.getThumbnail()));
+        assertEquals(LAST_MODIFIED, mCache.getLastModified(item.getThumbnail()));
+    }
+
+    @Test
+    public void download_storesTheTranscodedThumbnail() throws Exception {
+        final byte[] transcoded = new byte[]{1, 2, 3};
+        ThumbnailDownloader downloader = new ThumbnailDownloader(mCache, new ThumbnailTranscoder() {
+            @Override
+            public boolean transcode(File source, File target) throws IOException {
+                assertEquals(IMAGE.length, source.length());
+                Files.write(target.toPath(), transcoded);
+                return true;
+            }
+        }, 1, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        });
+        RssItem item = newItem("transcoded.jpg");
+
+        try {
+            assertTrue(downloader.download(item, new RecordingCallback()));
+            assertNotNull(mOutcomes.poll(5, TimeUnit.SECONDS));
+        } finally {
+            downloader.shutdown();
+        }
+
+        assertArrayEquals(transcoded, Files.readAllBytes(new File(item.getImagePathInCache()).toPath()));
+        assertEquals(transcoded.length, mCache.size());
+        //neither the downloaded thumbnail is left behind
+        assertEquals(2, mCacheDir.getRoot().list().length);
+    }
+
+    @Test
+    public void download_failureLeavesNothingInTheCache() throws Exception {
+        RssItem item = newItem("missing.jpg");
+
+        assertTrue(mDownloader.download(item, new RecordingCallback()));
+
+        assertTrue(mOutcomes.poll(5, TimeUnit.SECONDS) instanceof IOException);
+        assertFalse(new File(item.getImagePathInCache()).exists());
+        //not even a temporary file, only the journal
+        assertArrayEquals(new String[]{DiskLruCache.JOURNAL_FILE}, mCacheDir.getRoot().list());
+    }
+
+    @Test
+    public void downloadNow_neverCachesAnIncompleteBody() throws Exception {
+        RssItem item = newItem("partial.jpg");
+
+        try {
+            mDownloader.downloadNow(item);
+            fail("A partial response must fail the download");
+        } catch (IOException expected) {
+            //expected
+        }
+
+        assertFalse(new File(item.getImagePathInCache()).exists());
+        assertArrayEquals(new String[]{DiskLruCache.JOURNAL_FILE}, mCacheDir.getRoot().list());
+    }
+
+    @Test
+    public void downloadNow_givesTheConnectionOfAnErrorBack() throws Exception {
+        try {
+            mDownloader.downloadNow(newItem("broken.jpg"));
+            fail("An error response must fail the download");
+        } catch (IOException expected) {
+            //expected
+        }
+
+        assertTrue(mDownloader.downloadNow(newItem("after.jpg")));
+
+        //the body of the error has been read, so the same connection is reused
+        assertEquals(2, mClientPorts.size());
+        assertEquals(mClientPorts.get(0), mClientPorts.get(1));
+    }
+
+    @Test
+    public void downloadNow_failsOnNotModifiedForAnUncachedThumbnail() throws Exception {
+        RssItem item = newItem("unrequested.jpg");
+
+        try {
+            mDownloader.downloadNow(item);
+            fail("There's nothing to revalidate, so the download must fail");
+        } catch (IOException expected) {
+            //expected
+        }
+
+        assertFalse(new File(item.getImagePathInCache()).exists());
+    }
+
+    private RssItem newItem(String name) {
+        String url = mBaseUrl + name;
+        return new RssItem(name, url, null, null, null, null, url, mCache.resolve(url));
+    }
+
+    /**
+     * Records the outcome of every download: the item, or the error
+     */
+    private class RecordingCallback implements ThumbnailDownloader.Callback {
+
+        @Override
+        public void onThumbnailCached(RssItem item) {
+            mOutcomes.add(item);
+        }
+
+        @Override
+        public void onThumbnailFailed(RssItem item, IOException error) {
+            mOutcomes.add(error);
+        }
+    }
+}
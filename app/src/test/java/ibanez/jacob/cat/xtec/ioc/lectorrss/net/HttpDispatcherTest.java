@@ -0,0 +1,94 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.net;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link HttpDispatcher}
+ */
+public class HttpDispatcherTest {
+
+    private static final String HOST_A = "a.example.com";
+    private static final String HOST_B = "b.example.com";
+
+    @Test
+    public void busyHostDoesNotBlockOtherHosts() throws Exception {
+        HttpDispatcher dispatcher = new HttpDispatcher(4, 1);
+        HttpDispatcher.Permit first = dispatcher.acquire(HOST_A, Priority.FEED);
+
+        //a second request to the same host has to wait
+        Thread waiting = startAcquiring(dispatcher, HOST_A, Priority.FEED, null);
+        awaitWaiting(dispatcher, 1);
+
+        //but a request to another host runs right away
+        HttpDispatcher.Permit other = dispatcher.acquire(HOST_B, Priority.IMAGE);
+        assertEquals(2, dispatcher.getRunningCount());
+
+        //the waiting request runs (and finishes) once the host is free again
+        first.release();
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+        assertEquals(1, dispatcher.getRunningCount());
+
+        other.release();
+        //releasing twice does nothing
+        other.release();
+        assertEquals(0, dispatcher.getRunningCount());
+    }
+
+    @Test
+    public void higherPriorityRunsFirst() throws Exception {
+        HttpDispatcher dispatcher = new HttpDispatcher(1, 1);
+        HttpDispatcher.Permit running = dispatcher.acquire(HOST_A, Priority.FEED);
+        List<Priority> order = Collections.synchronizedList(new ArrayList<Priority>());
+
+        Thread image = startAcquiring(dispatcher, HOST_A, Priority.IMAGE, order);
+        awaitWaiting(dispatcher, 1);
+        Thread feed = startAcquiring(dispatcher, HOST_A, Priority.FEED, order);
+        awaitWaiting(dispatcher, 2);
+
+        running.release();
+        image.join(1000);
+        feed.join(1000);
+
+        assertEquals(2, order.size());
+        assertEquals(Priority.FEED, order.get(0));
+        assertEquals(Priority.IMAGE, order.get(1));
+    }
+
+    /**
+     * Starts a thread which acquires a permit, records its priority and releases it right away
+     */
+    private static Thread startAcquiring(final HttpDispatcher dispatcher, final String host,
+                                         final Priority priority, final List<Priority> order) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    HttpDispatcher.Permit permit = dispatcher.acquire(host, priority);
+                    if (order != null) {
+                        order.add(priority);
+                    }
+                    permit.release();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(HttpDispatcher dispatcher, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (dispatcher.getWaitingCount() < waiting && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(waiting, dispatcher.getWaitingCount());
+    }
+}
@@ -0,0 +1,160 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RssItemParser}, running on the plain JVM with the kXML 2 backend
+ */
+public class RssItemParserTest {
+
+    private static final String RSS =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                    "<rss version=\"2.0\" xmlns:media=\"http://search.yahoo.com/mrss/\">" +
+                    "<channel><title>Channel</title>" +
+                    "<item><title>First</title><link>http://example.com/1</link>" +
+                    "<author>Jacob</author><description><![CDATA[<p>One</p>]]></description>" +
+                    "<pubDate>Mon, 16 Oct 2017 10:00:00 +0200</pubDate>" +
+                    "<media:keywords>news, tech</media:keywords>" +
+                    "<media:thumbnail url=\"http://example.com/img/1.jpg\"/></item>" +
+                    "<item><title>Second</title><link>http://example.com/2</link>" +
+                    "<author>Jacob</author><media:keywords>news, tech</media:keywords></item>" +
+                    "<item><title>Third</title><link>http://example.com/3</link></item>" +
+                    "</channel></rss>";
+
+    private static final String ATOM =
+            "<feed xmlns=\"http://www.w3.org/2005/Atom\"><title>Feed</title>" +
+                    "<entry><title type=\"html\">Entry</title>" +
+                    "<link rel=\"self\" href=\"http://example.com/self\"/>" +
+                    "<link href=\"http://example.com/entry\"/>" +
+                    "<author><name>Jacob</name></author>" +
+                    "<category term=\"news\"/><category term=\"tech\"/>" +
+                    "<updated>2017-10-16T10:00:00Z</updated>" +
+                    "<summary>Summary</summary>" +
+                    "<content type=\"xhtml\"><div><p>Content</p></div></content>" +
+                    "</entry></feed>";
+
+    private static final String RDF =
+            "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" " +
+                    "xmlns=\"http://purl.org/rss/1.0/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">" +
+                    "<channel rdf:about=\"http://example.com\"><title>Channel</title></channel>" +
+                    "<item rdf:about=\"http://example.com/rdf\"><title>Rdf</title>" +
+                    "<link>http://example.com/rdf</link><dc:creator>Jacob</dc:creator>" +
+                    "<dc:subject>news</dc:subject><dc:subject>tech</dc:subject>" +
+                    "<dc:date>2017-10-16</dc:date></item>" +
+                    "</rdf:RDF>";
+
+    private RssItemParser mParser;
+
+    @Before
+    public void setUp() throws Exception {
+        mParser = new RssItemParser(new ImagePathResolver() {
+            @Override
+            public String resolve(String imageUrl) {
+                return new File("cache", Integer.toHexString(imageUrl.hashCode())).getPath();
+            }
+        }, new XmlParserFactory() {
+            @Override
+            public XmlPullParser newPullParser() {
+                return new KXmlParser();
+            }
+        });
+    }
+
+    @Test
+    public void parse_readsRssItems() throws Exception {
+        List<RssItem> items = mParser.parse(stream(RSS));
+
+        assertEquals(3, items.size());
+        RssItem first = items.get(0);
+        assertEquals("First", first.getTitle());
+        assertEquals("http://example.com/1", first.getLink());
+        assertEquals("Jacob", first.getAuthor());
+        assertEquals("<p>One</p>", first.getDescription());
+        assertEquals("news, tech", first.getCategories());
+        assertEquals("http://example.com/img/1.jpg", first.getThumbnail());
+        assertEquals(new File("cache", Integer.toHexString("http://example.com/img/1.jpg".hashCode())).getPath(),
+                first.getImagePathInCache());
+        assertNull(items.get(2).getThumbnail());
+    }
+
+    @Test
+    public void parse_readsAtomEntries() throws Exception {
+        List<RssItem> items = mParser.parse(stream(ATOM));
+
+        assertEquals(1, items.size());
+        RssItem entry = items.get(0);
+        assertEquals("Entry", entry.getTitle());
+        assertEquals("http://example.com/entry", entry.getLink());
+        assertEquals("Jacob", entry.getAuthor());
+        assertEquals("Summary", entry.getDescription());
+        assertEquals("2017-10-16T10:00:00Z", entry.getPubDate());
+        assertEquals("news, tech", entry.getCategories());
+    }
+
+    @Test
+    public void parse_readsRdfItems() throws Exception {
+        List<RssItem> items = mParser.parse(stream(RDF));
+
+        assertEquals(1, items.size());
+        RssItem item = items.get(0);
+        assertEquals("Rdf", item.getTitle());
+        assertEquals("http://example.com/rdf", item.getLink());
+        assertEquals("Jacob", item.getAuthor());
+        assertEquals("2017-10-16", item.getPubDate());
+        assertEquals("news, tech", item.getCategories());
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void parse_rejectsUnsupportedFormat() throws Exception {
+        mParser.parse(stream("<html><body/></html>"));
+    }
+
+    @Test
+    public void parse_stopsWhenSinkCancels() throws Exception {
+        int count = mParser.parse(stream(RSS), new ItemSink() {
+            @Override
+            public boolean onItem(RssItem item) {
+                return false;
+            }
+        });
+
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void parse_stopsAtWatermark() throws Exception {
+        FeedWatermark watermark = new FeedWatermark(Collections.singletonList("http://example.com/2"));
+
+        List<RssItem> items = mParser.parse(stream(RSS), watermark);
+
+        assertEquals(1, items.size());
+        assertEquals("First", items.get(0).getTitle());
+    }
+
+    @Test
+    public void parse_internsRepeatedValues() throws Exception {
+        List<RssItem> items = mParser.parse(stream(RSS));
+
+        assertSame(items.get(0).getAuthor(), items.get(1).getAuthor());
+        assertSame(items.get(0).getCategories(), items.get(1).getCategories());
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,43 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.repository;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FullTextSearch}
+ */
+public class FullTextSearchTest {
+
+    private static final double[] WEIGHTS = {3.0, 1.0, 2.0};
+
+    @Test
+    public void toMatchQuery_prefixesEveryWord() {
+        //separators split words, so they never reach the query
+        assertEquals("Polít* ica* 2017*", FullTextSearch.toMatchQuery("  Polít\"ica 2017 "));
+        assertEquals("news*", FullTextSearch.toMatchQuery("news"));
+        assertNull(FullTextSearch.toMatchQuery(" \"*- "));
+        assertNull(FullTextSearch.toMatchQuery(""));
+    }
+
+    @Test
+    public void score_prefersHitsInTheTitle() {
+        //one phrase, which is once in the title of the first row, and once in the description of the second
+        double inTitle = FullTextSearch.score(matchinfo(1, 3, 1, 2, 2, 0, 2, 2, 0, 0, 0), WEIGHTS);
+        double inDescription = FullTextSearch.score(matchinfo(1, 3, 0, 2, 2, 1, 2, 2, 0, 0, 0), WEIGHTS);
+
+        assertTrue(inTitle > inDescription);
+        assertEquals(0, FullTextSearch.score(matchinfo(1, 3, 0, 2, 2, 0, 2, 2, 0, 0, 0), WEIGHTS), 0);
+    }
+
+    private static byte[] matchinfo(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(ByteOrder.nativeOrder());
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
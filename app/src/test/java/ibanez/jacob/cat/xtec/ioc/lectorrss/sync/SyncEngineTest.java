@@ -0,0 +1,484 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.sync;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.DiskLruCache;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.image.ThumbnailDownloader;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.FeedWatermark;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ItemSink;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.RssItemParser;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.ItemStore;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.repository.ValidatorStore;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SyncEngine}, with a fake store, parser and downloader, against a local
+ * stand-in http server for the feed
+ */
+public class SyncEngineTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Rule
+    public TemporaryFolder mCacheDir = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private final CountDownLatch mStall = new CountDownLatch(1);
+
+    private FakeItemStore mStore;
+    private FakeValidatorStore mValidators;
+    private FakeParser mParser;
+    private FakeDownloader mDownloader;
+    private SyncEngine mEngine;
+
+    //the callbacks, which the test runs as if it was the main thread, and what the listener was told
+    private final BlockingQueue<Runnable> mCallbacks = new LinkedBlockingQueue<>();
+    private final RecordingListener mListener = new RecordingListener();
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+                    byte[] body = "<rss/>".getBytes("UTF-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        mServer.createContext("/stall", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                //the beginning of the feed, and then nothing at all until the test is over
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write("<rss>".getBytes("UTF-8"));
+                out.flush();
+                try {
+                    mStall.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+
+        mStore = new FakeItemStore();
+        mValidators = new FakeValidatorStore();
+        mParser = new FakeParser();
+        mDownloader = new FakeDownloader(DiskLruCache.open(mCacheDir.getRoot(), 1024 * 1024));
+        mEngine = new SyncEngine(mStore, mValidators, mParser, mDownloader, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mCallbacks.add(runnable);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.shutdown();
+        mDownloader.shutdown();
+        mStall.countDown();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void sync_storesTheItemsThenFetchesTheirThumbnailsThenFinishes() throws Exception {
+        mParser.mItems = 3;
+        mStore.mAlreadyStored.add(link(1));
+
+        mEngine.start(mBaseUrl + "/feed", mListener);
+        runCallbacksUntilTheEnd();
+
+        //only the new items are stored, and only theirs thumbnails downloaded, once stored
+        assertEquals(Collections.singletonList("finished"), mListener.tail(1));
+        List<String> events = mListener.mEvents;
+        assertTrue(events.contains("progress"));
+        assertTrue(events.indexOf("stored") < events.indexOf("finished"));
+        assertEquals(2, Collections.frequency(events, "thumbnail"));
+        assertTrue(events.lastIndexOf("thumbnail") < events.indexOf("finished"));
+        assertEquals(2, mDownloader.mDownloaded.size());
+        assertTrue(mDownloader.mNotStoredYet.isEmpty());
+
+        SyncProgress progress = mListener.mProgress;
+        assertFalse(progress.isNotModified());
+        assertEquals(3, progress.getParsedItems());
+        assertEquals(2, progress.getStoredItems());
+        assertEquals(2, progress.getCachedThumbnails());
+
+        //the next sync can be a conditional one
+        assertEquals(1, mValidators.mSaves);
+        assertEquals(ETAG, mValidators.getEtag(mBaseUrl + "/feed"));
+    }
+
+    @Test
+    public void sync_ownsTheThumbnailsOfTheNewItemsBeforeTellingAboutThem() throws Exception {
+        mParser.mItems = 3;
+        mStore.mAlreadyStored.add(link(1));
+
+        SyncEngine.Sync sync = mEngine.start(mBaseUrl + "/feed", mListener);
+        while (mListener.mProgress == null || mListener.mProgress.getStoredItems() == 0) {
+            Runnable callback = mCallbacks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("Nothing was ever stored", callback);
+            callback.run();
+        }
+
+        //as soon as the list can show the new items, their thumbnails are left to the sync
+        assertTrue(sync.ownsThumbnail(newItem(0)));
+        assertFalse(sync.ownsThumbnail(newItem(1)));
+        runCallbacksUntilTheEnd();
+        assertTrue(sync.ownsThumbnail(newItem(2)));
+    }
+
+    @Test
+    public void sync_parserWaitsWhileTheWriterIsBehind() throws Exception {
+        mParser.mItems = 10 * SyncEngine.QUEUE_CAPACITY;
+        mStore.mBlocked = new CountDownLatch(1);
+
+        mEngine.start(mBaseUrl + "/feed", mListener);
+
+        //the writer is stuck with its first batch, so the parser fills the queue and waits for room
+        assertTrue(mStore.mEntered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+        while (mParser.mEmitted.get() <= SyncEngine.QUEUE_CAPACITY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        //the first batch, a full queue, and the item the parser is trying to put
+        assertTrue(mParser.mEmitted.get() <= SyncEngine.BATCH_SIZE + SyncEngine.QUEUE_CAPACITY + 1);
+
+        //once the writer catches up, every item goes through
+        mStore.mBlocked.countDown();
+        runCallbacksUntilTheEnd();
+
+        assertEquals("finished", mListener.tail(1).get(0));
+        assertEquals(mParser.mItems, mListener.mProgress.getParsedItems());
+        assertEquals(mParser.mItems, mListener.mProgress.getStoredItems());
+        assertEquals(mParser.mItems, mDownloader.mDownloaded.size());
+    }
+
+    @Test
+    public void sync_failureKeepsTheValidatorsUnsaved() throws Exception {
+        mParser.mItems = 3;
+        mStore.mFailure = new IllegalStateException("The disk is full");
+
+        mEngine.start(mBaseUrl + "/feed", mListener);
+        runCallbacksUntilTheEnd();
+
+        assertEquals("failed", mListener.tail(1).get(0));
+        assertSame(mStore.mFailure, mListener.mError);
+        assertFalse(mListener.mEvents.contains("stored"));
+        assertEquals(0, mValidators.mSaves);
+    }
+
+    @Test
+    public void sync_notModifiedSkipsTheParserAndTheStore() throws Exception {
+        String url = mBaseUrl + "/feed";
+        mValidators.saveValidators(url, ETAG, null);
+        mValidators.mSaves = 0;
+
+        mEngine.start(url, mListener);
+        runCallbacksUntilTheEnd();
+
+        assertEquals(Arrays.asList("stored", "finished"), mListener.mEvents);
+        assertTrue(mListener.mProgress.isNotModified());
+        assertEquals(0, mListener.mProgress.getStoredItems());
+        assertEquals(0, mParser.mCalls.get());
+        assertEquals(0, mStore.mCalls.get());
+        //the validators are still the same
+        assertEquals(0, mValidators.mSaves);
+    }
+
+    @Test
+    public void cancel_neverCallsTheListenerAgainNorSavesTheValidators() throws Exception {
+        mParser.mItems = 3;
+        mStore.mBlocked = new CountDownLatch(1);
+
+        SyncEngine.Sync sync = mEngine.start(mBaseUrl + "/feed", mListener);
+        assertTrue(mStore.mEntered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        sync.cancel();
+
+        //the writer is interrupted instead of waiting for the store forever
+        assertTrue(mStore.mInterrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        mEngine.shutdown();
+        assertTrue(mEngine.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        //whatever was delivered before the cancel is dropped, and so is the end of the sync
+        Runnable callback;
+        while ((callback = mCallbacks.poll()) != null) {
+            callback.run();
+        }
+        assertTrue(mListener.mEvents.isEmpty());
+        assertEquals(0, mValidators.mSaves);
+    }
+
+    @Test
+    public void cancel_returnsRightAwayWhileTheFeedIsDownloading() throws Exception {
+        mParser.mReadWholeBody = true;
+
+        SyncEngine.Sync sync = mEngine.start(mBaseUrl + "/stall", mListener);
+        assertTrue(mParser.mReading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        //the download is aborted in the background, so the main thread is never blocked by the network
+        long start = System.nanoTime();
+        sync.cancel();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        Runnable callback;
+        while ((callback = mCallbacks.poll()) != null) {
+            callback.run();
+        }
+        assertTrue(mListener.mEvents.isEmpty());
+        assertEquals(0, mValidators.mSaves);
+    }
+
+    /**
+     * Runs the callbacks as they come, until the sync finishes or fails
+     */
+    private void runCallbacksUntilTheEnd() throws InterruptedException {
+        while (!mListener.mEvents.contains("finished") && !mListener.mEvents.contains("failed")) {
+            Runnable callback = mCallbacks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("The sync never ended", callback);
+            callback.run();
+        }
+    }
+
+    private static String link(int index) {
+        return "http://example.com/" + index;
+    }
+
+    private static RssItem newItem(int index) {
+        return new RssItem("Item " + index, link(index), null, null, null, null, link(index) + ".jpg", null);
+    }
+
+    /**
+     * Records the calls of the listener, which all happen in the test thread
+     */
+    private static class RecordingListener implements SyncEngine.Listener {
+
+        private final List<String> mEvents = new ArrayList<>();
+        private SyncProgress mProgress;
+        private Exception mError;
+
+        List<String> tail(int count) {
+            return mEvents.subList(mEvents.size() - count, mEvents.size());
+        }
+
+        @Override
+        public void onSyncProgress(SyncProgress progress) {
+            mEvents.add("progress");
+            mProgress = progress;
+        }
+
+        @Override
+        public void onItemsStored(SyncProgress progress) {
+            mEvents.add("stored");
+            mProgress = progress;
+        }
+
+        @Override
+        public void onSyncFinished(SyncProgress progress) {
+            mEvents.add("finished");
+            mProgress = progress;
+        }
+
+        @Override
+        public void onSyncFailed(SyncProgress progress, Exception error) {
+            mEvents.add("failed");
+            mProgress = progress;
+            mError = error;
+        }
+
+        @Override
+        public void onThumbnailCached(RssItem item) {
+            mEvents.add("thumbnail");
+        }
+
+        @Override
+        public void onThumbnailFailed(RssItem item, IOException error) {
+            mEvents.add("thumbnail failed");
+        }
+    }
+
+    /**
+     * Emits the given number of items, whatever the feed is, or reads the whole feed
+     */
+    private static class FakeParser extends RssItemParser {
+
+        private volatile int mItems;
+        private volatile boolean mReadWholeBody;
+        private final AtomicInteger mCalls = new AtomicInteger();
+        private final AtomicInteger mEmitted = new AtomicInteger();
+        private final CountDownLatch mReading = new CountDownLatch(1);
+
+        FakeParser() {
+            super(null, null);
+        }
+
+        @Override
+        public int parse(InputStream in, ItemSink sink, FeedWatermark watermark)
+                throws XmlPullParserException, IOException {
+            mCalls.incrementAndGet();
+            if (mReadWholeBody) {
+                readWholeBody(in);
+            }
+            for (int i = 0; i < mItems; i++) {
+                mEmitted.incrementAndGet();
+                if (!sink.onItem(newItem(i))) {
+                    return i;
+                }
+            }
+            return mItems;
+        }
+
+        private void readWholeBody(InputStream in) throws IOException {
+            mReading.countDown();
+            while (in.read() != -1) {
+                //nothing to do with the body
+            }
+        }
+    }
+
+    /**
+     * Keeps the stored items in memory, and can be told to fail, or to wait before storing
+     */
+    private static class FakeItemStore implements ItemStore {
+
+        private final Set<String> mAlreadyStored = Collections.synchronizedSet(new HashSet<String>());
+        private final Set<RssItem> mStored = Collections.synchronizedSet(new HashSet<RssItem>());
+        private final AtomicInteger mCalls = new AtomicInteger();
+        private final CountDownLatch mEntered = new CountDownLatch(1);
+        private final CountDownLatch mInterrupted = new CountDownLatch(1);
+        private volatile CountDownLatch mBlocked;
+        private volatile RuntimeException mFailure;
+
+        @Override
+        public List<String> getRecentLinks(int limit) {
+            return new ArrayList<>(mAlreadyStored);
+        }
+
+        @Override
+        public List<RssItem> storeItems(Collection<RssItem> items) throws InterruptedException {
+            mCalls.incrementAndGet();
+            mEntered.countDown();
+            if (mBlocked != null) {
+                try {
+                    mBlocked.await();
+                } catch (InterruptedException ex) {
+                    mInterrupted.countDown();
+                    throw ex;
+                }
+            }
+            if (mFailure != null) {
+                throw mFailure;
+            }
+
+            List<RssItem> stored = new ArrayList<>();
+            for (RssItem item : items) {
+                if (mAlreadyStored.add(item.getLink())) {
+                    stored.add(item);
+                    mStored.add(item);
+                }
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * Keeps the validators in memory, and counts how many times they are saved
+     */
+    private static class FakeValidatorStore implements ValidatorStore {
+
+        private volatile String mEtag;
+        private volatile String mLastModified;
+        private volatile int mSaves;
+
+        @Override
+        public String getEtag(String feedUrl) {
+            return mEtag;
+        }
+
+        @Override
+        public String getLastModified(String feedUrl) {
+            return mLastModified;
+        }
+
+        @Override
+        public void saveValidators(String feedUrl, String etag, String lastModified) {
+            mEtag = etag;
+            mLastModified = lastModified;
+            mSaves++;
+        }
+    }
+
+    /**
+     * Pretends to download every thumbnail, and checks that its item was stored first
+     */
+    private class FakeDownloader extends ThumbnailDownloader {
+
+        private final List<RssItem> mDownloaded = Collections.synchronizedList(new ArrayList<RssItem>());
+        private final List<RssItem> mNotStoredYet = Collections.synchronizedList(new ArrayList<RssItem>());
+
+        FakeDownloader(DiskLruCache cache) {
+            super(cache, null, 1, new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    runnable.run();
+                }
+            });
+        }
+
+        @Override
+        public boolean downloadNow(RssItem item) {
+            if (!mStore.mStored.contains(item)) {
+                mNotStoredYet.add(item);
+            }
+            mDownloaded.add(item);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ConnectionUtils}, against a local stand-in http server
+ */
+public class ConnectionUtilsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String FEED = "<rss><channel>" + repeat("<item><title>Title</title></item>", 100) +
+            "</channel></rss>";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 16 Oct 2017 10:00:00 GMT";
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private String mUrl;
+    private int mFullResponses;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/rss", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean unchanged = ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (unchanged) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    //the client always asks for a compressed body, see /identity for a server which
+                    //ignores it
+                    mFullResponses++;
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    exchange.sendResponseHeaders(200, 0);
+                    OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+                    out.write(FEED.getBytes(UTF_8));
+                    out.close();
+                } else {
+                    exchange.sendResponseHeaders(406, -1);
+                }
+                exchange.close();
+            }
+        });
+        mServer.createContext("/identity", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                //a server which ignores the accepted encodings
+                byte[] body = FEED.getBytes(UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+                exchange.close();
+            }
+        });
+        mServer.createContext("/deflate", new DeflateHandler(false));
+        mServer.createContext("/raw-deflate", new DeflateHandler(true));
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+        mUrl = mBaseUrl + "/rss";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void openHttpConnection_returnsBodyAndValidators() throws Exception {
+        FeedResponse response = ConnectionUtils.openHttpConnection(mUrl, null, null);
+
+        assertFalse(response.isNotModified());
+        assertEquals(FEED, read(response.getBody()));
+        assertEquals(ETAG, response.getEtag());
+        assertEquals(LAST_MODIFIED, response.getLastModified());
+    }
+
+    @Test
+    public void openHttpConnection_decompressesGzipBody() throws Exception {
+        FeedResponse response = ConnectionUtils.openHttpConnection(mUrl, null, null);
+
+        assertEquals(FEED, read(response.getBody()));
+        assertEquals(FEED.getBytes(UTF_8).length, response.getDecodedBytes());
+        assertTrue(response.getTransferredBytes() < response.getDecodedBytes());
+    }
+
+    @Test
+    public void openHttpConnection_readsUncompressedBodyAsItIs() throws Exception {
+        FeedResponse response = ConnectionUtils.openHttpConnection(mBaseUrl + "/identity", null, null);
+
+        assertEquals(FEED, read(response.getBody()));
+        assertEquals(FEED.getBytes(UTF_8).length, response.getDecodedBytes());
+        assertEquals(response.getDecodedBytes(), response.getTransferredBytes());
+    }
+
+    @Test
+    public void openHttpConnection_decompressesZlibWrappedDeflateBody() throws Exception {
+        FeedResponse response = ConnectionUtils.openHttpConnection(mBaseUrl + "/deflate", null, null);
+
+        assertEquals(FEED, read(response.getBody()));
+        assertTrue(response.getTransferredBytes() < response.getDecodedBytes());
+    }
+
+    @Test
+    public void openHttpConnection_decompressesRawDeflateBody() throws Exception {
+        FeedResponse response = ConnectionUtils.openHttpConnection(mBaseUrl + "/raw-deflate", null, null);
+
+        assertEquals(FEED, read(response.getBody()));
+        assertTrue(response.getTransferredBytes() < response.getDecodedBytes());
+    }
+
+    @Test
+    public void openHttpConnection_treatsNotModifiedAsUnchanged() throws Exception {
+        FeedResponse first = ConnectionUtils.openHttpConnection(mUrl, null, null);
+        read(first.getBody());
+
+        FeedResponse second = ConnectionUtils.openHttpConnection(mUrl, first.getEtag(),
+                first.getLastModified());
+
+        assertTrue(second.isNotModified());
+        assertNull(second.getBody());
+        assertEquals(ETAG, second.getEtag());
+        assertEquals(1, mFullResponses);
+    }
+
+    /**
+     * Answers with the feed compressed as "deflate", either zlib wrapped as it should be, or raw
+     */
+    private static class DeflateHandler implements HttpHandler {
+
+        private final boolean mRaw;
+
+        DeflateHandler(boolean raw) {
+            this.mRaw = raw;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+            exchange.sendResponseHeaders(200, 0);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, mRaw);
+            OutputStream out = new DeflaterOutputStream(exchange.getResponseBody(), deflater);
+            out.write(FEED.getBytes(UTF_8));
+            out.close();
+            deflater.end();
+            exchange.close();
+        }
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return new String(out.toByteArray(), UTF_8);
+    }
+}
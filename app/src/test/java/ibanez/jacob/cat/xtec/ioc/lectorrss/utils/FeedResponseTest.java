@@ -0,0 +1,58 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FeedResponse}, with a fake connection which only tells if it was disconnected
+ */
+public class FeedResponseTest {
+
+    @Test
+    public void abort_disconnectsTheConnection() throws Exception {
+        FakeConnection connection = new FakeConnection();
+        CountingInputStream body = new CountingInputStream(new ByteArrayInputStream(new byte[0]));
+        FeedResponse response = new FeedResponse(connection, body, body, null, null);
+
+        response.abort();
+
+        assertTrue(connection.mDisconnected);
+    }
+
+    @Test
+    public void abort_doesNothingWhenTheFeedHasNotChanged() {
+        FeedResponse response = new FeedResponse(null, null, null, null, null);
+
+        response.abort();
+
+        assertTrue(response.isNotModified());
+    }
+
+    private static class FakeConnection extends HttpURLConnection {
+
+        private boolean mDisconnected;
+
+        FakeConnection() throws Exception {
+            super(new URL("http://example.com/feed"));
+        }
+
+        @Override
+        public void disconnect() {
+            mDisconnected = true;
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public void connect() {
+        }
+    }
+}
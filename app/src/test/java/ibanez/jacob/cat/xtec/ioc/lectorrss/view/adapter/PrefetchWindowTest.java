@@ -0,0 +1,82 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PrefetchWindow}, with a list of rows 100 pixels high, ten of them visible
+ */
+public class PrefetchWindowTest {
+
+    private static final int HEIGHT = 1000;
+    private static final int CAPACITY = 1000;
+
+    private final PrefetchWindow mWindow = new PrefetchWindow();
+
+    @Test
+    public void lookahead_growsWithTheSpeedOfTheScroll() {
+        //less than a row per frame: a screen of rows
+        assertEquals(10, PrefetchWindow.lookahead(10, 5, HEIGHT, CAPACITY));
+        //three rows per frame
+        assertEquals(10 + 3 * PrefetchWindow.FRAMES_AHEAD, PrefetchWindow.lookahead(10, 300, HEIGHT, CAPACITY));
+        assertEquals(10 + 3 * PrefetchWindow.FRAMES_AHEAD, PrefetchWindow.lookahead(10, -300, HEIGHT, CAPACITY));
+    }
+
+    @Test
+    public void lookahead_isBoundedByTheMemoryCache() {
+        //only a share of the cache, and the visible rows come first
+        assertEquals(40 / PrefetchWindow.MEMORY_SHARE - 10, PrefetchWindow.lookahead(10, 300, HEIGHT, 40));
+        assertTrue(PrefetchWindow.lookahead(10, 300, HEIGHT, 10) <= 0);
+    }
+
+    @Test
+    public void next_prefetchesTheRowsBelowOnlyOnce() {
+        assertRange(10, 19, mWindow.next(0, 9, 5, HEIGHT, CAPACITY, 100));
+
+        //a row further, only the new row is left
+        assertRange(20, 20, mWindow.next(1, 10, 5, HEIGHT, CAPACITY, 100));
+        assertNull(mWindow.next(1, 10, 5, HEIGHT, CAPACITY, 100));
+    }
+
+    @Test
+    public void next_prefetchesTheRowsAboveWhenScrollingUp() {
+        mWindow.next(50, 59, 5, HEIGHT, CAPACITY, 100);
+
+        //starts over in the new direction
+        assertRange(40, 49, mWindow.next(50, 59, -5, HEIGHT, CAPACITY, 100));
+        assertRange(0, 2, mWindow.next(3, 12, -5, HEIGHT, CAPACITY, 100));
+        assertNull(mWindow.next(2, 11, -5, HEIGHT, CAPACITY, 100));
+    }
+
+    @Test
+    public void next_neverGoesBeyondTheRowsOfTheList() {
+        assertRange(10, 14, mWindow.next(0, 9, 5, HEIGHT, CAPACITY, 15));
+        assertNull(mWindow.next(0, 9, 5, HEIGHT, CAPACITY, 15));
+
+        //a page is appended, so its rows are prefetched as soon as they are reached
+        assertRange(15, 20, mWindow.next(1, 10, 5, HEIGHT, CAPACITY, 45));
+    }
+
+    @Test
+    public void next_doesNothingWithoutRoomInMemory() {
+        assertNull(mWindow.next(0, 9, 300, HEIGHT, 10, 100));
+    }
+
+    @Test
+    public void reset_prefetchesTheRowsOfANewListAgain() {
+        mWindow.next(0, 9, 5, HEIGHT, CAPACITY, 100);
+        mWindow.next(10, 19, 5, HEIGHT, CAPACITY, 100);
+
+        //the new list is scrolled from the top again
+        mWindow.reset();
+
+        assertRange(10, 19, mWindow.next(0, 9, 5, HEIGHT, CAPACITY, 100));
+    }
+
+    private static void assertRange(int from, int to, int[] range) {
+        assertNotNull(range);
+        assertEquals(from, range[0]);
+        assertEquals(to, range[1]);
+    }
+}
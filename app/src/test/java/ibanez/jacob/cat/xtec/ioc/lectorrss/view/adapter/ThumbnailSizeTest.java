@@ -0,0 +1,27 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.view.adapter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ThumbnailSize}, with the weights of the row of the list
+ */
+public class ThumbnailSizeTest {
+
+    private static final float THUMBNAIL_WEIGHT = 0.75f;
+    private static final float TITLE_WEIGHT = 1f;
+    private static final int PADDING = 16;
+
+    @Test
+    public void share_growsWithTheWidthOfTheRow() {
+        //three sevenths of the row, without the padding: a phone held upright, and in landscape
+        assertEquals(463 - 2 * PADDING, ThumbnailSize.share(1080, THUMBNAIL_WEIGHT, TITLE_WEIGHT, PADDING));
+        assertEquals(823 - 2 * PADDING, ThumbnailSize.share(1920, THUMBNAIL_WEIGHT, TITLE_WEIGHT, PADDING));
+    }
+
+    @Test
+    public void share_isNeverEmpty() {
+        assertEquals(1, ThumbnailSize.share(10, THUMBNAIL_WEIGHT, TITLE_WEIGHT, PADDING));
+    }
+}
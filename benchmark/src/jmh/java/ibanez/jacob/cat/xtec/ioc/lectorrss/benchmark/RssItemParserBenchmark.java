@@ -0,0 +1,134 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import ibanez.jacob.cat.xtec.ioc.lectorrss.model.RssItem;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ImagePathResolver;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.ItemSink;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.PortableXmlParserFactory;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.parser.RssItemParser;
+import ibanez.jacob.cat.xtec.ioc.lectorrss.utils.HashUtils;
+
+/**
+ * Throughput and allocation benchmarks of the {@link RssItemParser}.
+ * <p>
+ * Every benchmark parses a whole synthetic feed, and counts one operation per item, so the score
+ * is in items per second and the {@code gc.alloc.rate.norm} of the gc profiler is in bytes
+ * allocated per item. Run them with {@code ./gradlew :benchmark:jmh}.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RssItemParserBenchmark {
+
+    //sizes of the synthetic feeds
+    private static final int SMALL_FEED = 10;
+    private static final int MEDIUM_FEED = 1000;
+    private static final int LARGE_FEED = 100000;
+
+    //lengths of the descriptions of the items
+    private static final int SHORT_DESCRIPTION = 200;
+    private static final int LARGE_DESCRIPTION = 16 * 1024;
+
+    @Benchmark
+    @OperationsPerInvocation(SMALL_FEED)
+    public int parseSmallFeed(SmallFeed feed, Blackhole blackhole) throws Exception {
+        return feed.parse(blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEDIUM_FEED)
+    public int parseMediumFeed(MediumFeed feed, Blackhole blackhole) throws Exception {
+        return feed.parse(blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LARGE_FEED)
+    public int parseLargeFeed(LargeFeed feed, Blackhole blackhole) throws Exception {
+        return feed.parse(blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEDIUM_FEED)
+    public int parseFeedWithLargeDescriptions(LargeDescriptionsFeed feed, Blackhole blackhole)
+            throws Exception {
+        return feed.parse(blackhole);
+    }
+
+    /**
+     * Base state with the bytes of a synthetic feed and the parser under test
+     */
+    public abstract static class Feed {
+
+        private byte[] mXml;
+        private RssItemParser mParser;
+
+        void setUp(int items, int descriptionLength) throws XmlPullParserException {
+            mXml = SyntheticFeeds.rss(items, descriptionLength);
+            //resolve the thumbnails as the app's cache does, by the hash of their url
+            mParser = new RssItemParser(new ImagePathResolver() {
+                @Override
+                public String resolve(String imageUrl) {
+                    return new File("cache", HashUtils.sha1Hex(imageUrl)).getPath();
+                }
+            }, new PortableXmlParserFactory());
+        }
+
+        int parse(final Blackhole blackhole) throws XmlPullParserException, IOException {
+            return mParser.parse(new ByteArrayInputStream(mXml), new ItemSink() {
+                @Override
+                public boolean onItem(RssItem item) {
+                    blackhole.consume(item);
+                    return true;
+                }
+            });
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SmallFeed extends Feed {
+        @Setup
+        public void setUp() throws XmlPullParserException {
+            setUp(SMALL_FEED, SHORT_DESCRIPTION);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MediumFeed extends Feed {
+        @Setup
+        public void setUp() throws XmlPullParserException {
+            setUp(MEDIUM_FEED, SHORT_DESCRIPTION);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LargeFeed extends Feed {
+        @Setup
+        public void setUp() throws XmlPullParserException {
+            setUp(LARGE_FEED, SHORT_DESCRIPTION);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LargeDescriptionsFeed extends Feed {
+        @Setup
+        public void setUp() throws XmlPullParserException {
+            setUp(MEDIUM_FEED, LARGE_DESCRIPTION);
+        }
+    }
+}
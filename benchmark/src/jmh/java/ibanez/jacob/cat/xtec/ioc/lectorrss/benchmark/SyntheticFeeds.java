@@ -0,0 +1,74 @@
+package ibanez.jacob.cat.xtec.ioc.lectorrss.benchmark;
+
+import java.nio.charset.Charset;
+
+/**
+ * Generator of synthetic RSS 2.0 feeds for the benchmarks.
+ * <p>
+ * Every item looks like the ones of the app's real feed: title, link, author, description, publish
+ * date, keywords and thumbnail. Authors and keywords take only a few different values.
+ *
+ * @author <a href="mailto:jacobibanez@jacobibanez.com">Jacob Ibáñez Sánchez</a>.
+ */
+final class SyntheticFeeds {
+
+    //number of different authors and keywords in a feed
+    private static final int DISTINCT_AUTHORS = 8;
+    private static final int DISTINCT_KEYWORDS = 16;
+
+    private SyntheticFeeds() {
+    }
+
+    /**
+     * Generates a RSS 2.0 feed
+     *
+     * @param items             The number of items of the feed
+     * @param descriptionLength The approximate length of the html description of every item
+     * @return The bytes of the feed, encoded in UTF-8
+     */
+    static byte[] rss(int items, int descriptionLength) {
+        String description = html(descriptionLength);
+        StringBuilder xml = new StringBuilder(items * (400 + description.length()));
+
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<rss version=\"2.0\" xmlns:media=\"http://search.yahoo.com/mrss/\">")
+                .append("<channel><title>Synthetic feed</title><link>http://example.com/</link>")
+                .append("<description>Synthetic feed for benchmarks</description>");
+
+        for (int i = 0; i < items; i++) {
+            xml.append("<item>")
+                    .append("<title>Synthetic news number ").append(i).append("</title>")
+                    .append("<link>http://example.com/news/").append(i).append(".html</link>")
+                    .append("<author>Author ").append(i % DISTINCT_AUTHORS).append("</author>")
+                    .append("<description><![CDATA[").append(description).append("]]></description>")
+                    .append("<pubDate>Mon, 16 Oct 2017 10:00:00 +0200</pubDate>")
+                    .append("<media:keywords>news, keyword ").append(i % DISTINCT_KEYWORDS)
+                    .append("</media:keywords>")
+                    .append("<media:thumbnail url=\"http://example.com/img/").append(i)
+                    .append(".jpg\" width=\"100\" height=\"100\"/>")
+                    .append("</item>");
+        }
+
+        xml.append("</channel></rss>");
+
+        return xml.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Generates an html body of approximately the given length
+     *
+     * @param length The approximate length
+     * @return The html body
+     */
+    private static String html(int length) {
+        String paragraph = "<p>Lorem ipsum dolor sit amet, <a href=\"http://example.com\">consectetur</a> " +
+                "adipiscing elit, sed do <em>eiusmod</em> tempor incididunt ut labore.</p>";
+        StringBuilder html = new StringBuilder(length + paragraph.length());
+
+        do {
+            html.append(paragraph);
+        } while (html.length() < length);
+
+        return html.toString();
+    }
+}